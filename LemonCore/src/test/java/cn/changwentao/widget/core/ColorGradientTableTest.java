@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ColorGradientTableTest {
+
+	@Test
+	public void rejectsResolutionBelowTwo() {
+		ColorGradientTable table = new ColorGradientTable(0xFF000000,
+				0xFFFFFFFF);
+		for (int resolution : new int[] { 1, 0, -1 }) {
+			try {
+				table.setResolution(resolution);
+				fail("分辨率" + resolution + "应被拒绝");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+		// 被拒绝后查找表保持原来的分辨率
+		assertEquals(0xFF000000, table.getColor(0f));
+		assertEquals(0xFFFFFFFF, table.getColor(100f));
+	}
+
+	/**
+	 * 取色四舍五入到最近的表项，超出0到100的百分比截断到两端。
+	 */
+	@Test
+	public void roundsToNearestEntry() {
+		ColorGradientTable table = new ColorGradientTable(0xFF000000,
+				0xFF0000FF);
+		table.setResolution(3);
+		assertEquals(0xFF000000, table.getColor(-10f));
+		assertEquals(0xFF000000, table.getColor(24f));
+		assertEquals(table.getColor(50f), table.getColor(26f));
+		assertEquals(table.getColor(50f), table.getColor(74f));
+		assertEquals(0xFF0000FF, table.getColor(76f));
+		assertEquals(0xFF0000FF, table.getColor(110f));
+	}
+
+	/** 端点测试使用的颜色，包括透明度不同、通道取极值和接近极值的颜色 */
+	private static final int[] COLORS = { 0xFF000000, 0xFFFFFFFF, 0xFFFF0000,
+			0xFF00FF00, 0xFF0000FF, 0x80123456, 0x00FEDCBA, 0xFF010101,
+			0xFFFEFEFE, 0x7F7F7F7F, 0xFFFF8800, 0xFF33B5E5 };
+
+	private static final int[] INTERPOLATIONS = {
+			ColorGradientTable.INTERPOLATION_RGB,
+			ColorGradientTable.INTERPOLATION_LINEAR_RGB,
+			ColorGradientTable.INTERPOLATION_OKLAB };
+
+	/**
+	 * 每种插值方式在0和100处都精确返回起止颜色，查找表的两端也是如此。
+	 */
+	@Test
+	public void endpointsRoundTripExactly() {
+		for (int interpolation : INTERPOLATIONS) {
+			for (int start : COLORS) {
+				for (int end : COLORS) {
+					String message = "插值方式" + interpolation + "，"
+							+ Integer.toHexString(start) + "到"
+							+ Integer.toHexString(end);
+					assertEquals(message, start,
+							interpolate(interpolation, start, end, 0f));
+					assertEquals(message, end,
+							interpolate(interpolation, start, end, 100f));
+
+					ColorGradientTable table = new ColorGradientTable(start,
+							end);
+					table.setInterpolation(interpolation);
+					assertEquals(message, start, table.getColor(0f));
+					assertEquals(message, end, table.getColor(100f));
+				}
+			}
+		}
+	}
+
+	/**
+	 * sRGB空间逐通道插值，黑到白的中点为127，各通道的增量向0截断。
+	 */
+	@Test
+	public void rgbMidpoints() {
+		int mode = ColorGradientTable.INTERPOLATION_RGB;
+		assertEquals(0xFF7F7F7F, interpolate(mode, 0xFF000000, 0xFFFFFFFF, 50f));
+		assertEquals(0xFF80007F, interpolate(mode, 0xFFFF0000, 0xFF0000FF, 50f));
+		assertEquals(0x7F000000, interpolate(mode, 0x00000000, 0xFF000000, 50f));
+		assertEquals(0xFF3F3F3F, interpolate(mode, 0xFF000000, 0xFFFFFFFF, 25f));
+	}
+
+	/**
+	 * 线性RGB空间插值，黑到白的中点是线性亮度0.5，对应sRGB的188（0xBC），比sRGB插值亮。
+	 */
+	@Test
+	public void linearRgbMidpoints() {
+		int mode = ColorGradientTable.INTERPOLATION_LINEAR_RGB;
+		assertEquals(0xFFBCBCBC, interpolate(mode, 0xFF000000, 0xFFFFFFFF, 50f));
+		assertEquals(0xFFBC00BC, interpolate(mode, 0xFFFF0000, 0xFF0000FF, 50f));
+		// 透明度始终在线性空间中插值并四舍五入
+		assertEquals(0x80000000, interpolate(mode, 0x00000000, 0xFF000000, 50f));
+	}
+
+	/**
+	 * OKLab空间插值，黑到白的中点是明度0.5，即线性亮度0.125，对应sRGB的99（0x63）。
+	 */
+	@Test
+	public void oklabMidpoints() {
+		int mode = ColorGradientTable.INTERPOLATION_OKLAB;
+		assertEquals(0xFF636363, interpolate(mode, 0xFF000000, 0xFFFFFFFF, 50f));
+		assertEquals(0x80000000, interpolate(mode, 0x00000000, 0xFF000000, 50f));
+		// 相同颜色之间插值不改变颜色
+		assertEquals(0xFF33B5E5, interpolate(mode, 0xFF33B5E5, 0xFF33B5E5, 50f));
+	}
+
+	/**
+	 * 查找表的中间表项与直接插值的结果一致。
+	 */
+	@Test
+	public void tableMatchesInterpolation() {
+		for (int interpolation : INTERPOLATIONS) {
+			ColorGradientTable table = new ColorGradientTable(0xFFFF0000,
+					0xFF0000FF);
+			table.setResolution(5);
+			table.setInterpolation(interpolation);
+			for (int i = 0; i < 5; i++) {
+				float percent = i * 25f;
+				assertEquals(
+						interpolate(interpolation, 0xFFFF0000, 0xFF0000FF,
+								percent), table.getColor(percent));
+			}
+		}
+	}
+
+	private static int interpolate(int interpolation, int start, int end,
+			float percent) {
+		switch (interpolation) {
+		case ColorGradientTable.INTERPOLATION_LINEAR_RGB:
+			return ColorGradientTable.interpolateLinearRgb(start, end, percent);
+		case ColorGradientTable.INTERPOLATION_OKLAB:
+			return ColorGradientTable.interpolateOklab(start, end, percent);
+		default:
+			return ColorGradientTable.interpolateRgb(start, end, percent);
+		}
+	}
+}
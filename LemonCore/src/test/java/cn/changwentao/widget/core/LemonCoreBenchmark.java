@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * core包中每帧都会执行的代码的JMH基准测试。
+ * <p>
+ * 运行{@code mvn -Pbenchmark test}，结果中的ns/op为每次调用的耗时，
+ * gc.alloc.rate.norm为每次调用分配的字节数。只运行其中一部分时用
+ * {@code -Dbenchmark=正则表达式}指定。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LemonCoreBenchmark {
+
+	/** 每次调用使用不同的百分比值，避免JIT把结果当作常量 */
+	private static final int PERCENT_COUNT = 1024;
+
+	private final float[] mPercents = new float[PERCENT_COUNT];
+	private int mNext;
+
+	private ColorGradientTable mColorTable;
+	private LemonGeometry mGeometry;
+	private LemonProgressStream mStream;
+	private PublishedPercent mPublished;
+	private long mFrameTime;
+
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < PERCENT_COUNT; i++) {
+			mPercents[i] = i * 100f / (PERCENT_COUNT - 1);
+		}
+		mColorTable = new ColorGradientTable(0xFFFF0000, 0xFF00FF00);
+		mColorTable.setInterpolation(ColorGradientTable.INTERPOLATION_OKLAB);
+		mGeometry = LemonGeometry.compute(480, 480, 8, 8, 8, 8, 20);
+		mStream = new LemonProgressStream();
+		mStream.reset(0f);
+		mPublished = new PublishedPercent();
+	}
+
+	private float nextPercent() {
+		mNext = (mNext + 1) & (PERCENT_COUNT - 1);
+		return mPercents[mNext];
+	}
+
+	/** 查表得到圆环颜色，每帧绘制使用的方式 */
+	@Benchmark
+	public int colorTableLookup() {
+		return mColorTable.getColor(nextPercent());
+	}
+
+	/** 直接在Oklab空间插值，作为查找表的对照 */
+	@Benchmark
+	public int colorOklabInterpolate() {
+		return ColorGradientTable.interpolateOklab(0xFFFF0000, 0xFF00FF00,
+				nextPercent());
+	}
+
+	@Benchmark
+	public int percentLabelIndex() {
+		return PercentLabels.indexOf(nextPercent());
+	}
+
+	/** 尺寸变化时执行一次，每次创建一个LemonGeometry */
+	@Benchmark
+	public LemonGeometry geometryCompute() {
+		return LemonGeometry.compute(480 + (mNext++ & 7), 480, 8, 8, 8, 8, 20);
+	}
+
+	@Benchmark
+	public boolean geometryPointInHeart() {
+		float percent = nextPercent();
+		return mGeometry.pointInHeart(percent * 4.8f, 480 - percent * 4.8f);
+	}
+
+	@Benchmark
+	public int measure() {
+		int spec = LemonMeasure.AT_MOST | (400 + (mNext++ & 7));
+		return LemonMeasure.measureWidth(spec, spec, 8, 8, 8, 8, 100)
+				+ LemonMeasure.measureHeight(spec, spec, 8, 8, 8, 8, 100);
+	}
+
+	/** 流式输入：每帧添加一个采样并推进一帧 */
+	@Benchmark
+	public float progressStreamFrame() {
+		mFrameTime += 16;
+		mStream.push(mFrameTime, nextPercent());
+		mStream.step(mFrameTime, 0f, 100f);
+		return mStream.getValue();
+	}
+
+	/** 一次发布和一次取出，不存在竞争时的开销 */
+	@Benchmark
+	public float publishAndTake() {
+		mPublished.publish(nextPercent());
+		return mPublished.take();
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LemonProgressStreamTest {
+
+	private static final float DELTA = 1e-3f;
+
+	/**
+	 * 平滑时间为0时显示值等于目标值，用来直接观察拟合和外推的结果。
+	 */
+	private static LemonProgressStream unsmoothed() {
+		LemonProgressStream stream = new LemonProgressStream();
+		stream.setSmoothingTime(0);
+		stream.reset(0f);
+		return stream;
+	}
+
+	/**
+	 * 速度取所有采样的最小二乘斜率，而不是最后两个采样的差。
+	 */
+	@Test
+	public void extrapolatesWithLeastSquaresSlope() {
+		LemonProgressStream stream = unsmoothed();
+		stream.push(0, 0f);
+		stream.push(100, 10f);
+		stream.push(200, 20f);
+		stream.push(300, 40f);
+		// 斜率为6500/50000=0.13，最后两个采样的差为0.2
+		stream.step(300, 0f, 100f);
+		assertTrue(stream.step(350, 0f, 100f));
+		assertEquals(40f + 0.13f * 50, stream.getValue(), DELTA);
+	}
+
+	/**
+	 * 外推不超过最近采样间隔的两倍，到达上限后目标值不再变化，显示值到达目标值即静止。
+	 */
+	@Test
+	public void capsExtrapolationAtTwiceLastInterval() {
+		LemonProgressStream stream = unsmoothed();
+		stream.push(0, 0f);
+		stream.push(100, 10f);
+		stream.step(100, 0f, 100f);
+		assertTrue(stream.step(250, 0f, 100f));
+		assertEquals(25f, stream.getValue(), DELTA);
+		assertFalse(stream.step(400, 0f, 100f));
+		assertEquals(30f, stream.getValue(), DELTA);
+		assertFalse(stream.step(1000, 0f, 100f));
+		assertEquals(30f, stream.getValue(), DELTA);
+	}
+
+	/**
+	 * 超过缓冲容量后最早的采样被覆盖，不再参与拟合。
+	 */
+	@Test
+	public void dropsOldestSamplesAfterWraparound() {
+		LemonProgressStream stream = unsmoothed();
+		for (int i = 0; i < 4; i++) {
+			stream.push(i * 10, 50f);
+		}
+		for (int i = 4; i < 12; i++) {
+			stream.push(i * 10, i);
+		}
+		stream.step(110, 0f, 100f);
+		stream.step(120, 0f, 100f);
+		assertEquals(12f, stream.getValue(), DELTA);
+	}
+
+	@Test
+	public void clampsToRange() {
+		LemonProgressStream stream = unsmoothed();
+		stream.push(0, 50f);
+		stream.push(100, 90f);
+		stream.step(100, 0f, 100f);
+		stream.step(300, 0f, 100f);
+		assertEquals(100f, stream.getValue(), 0f);
+
+		stream.reset(50f);
+		stream.push(0, 50f);
+		stream.push(100, 10f);
+		stream.step(100, 0f, 100f);
+		stream.step(300, 0f, 100f);
+		assertEquals(0f, stream.getValue(), 0f);
+
+		stream.reset(50f);
+		stream.push(0, 80f);
+		stream.step(0, 0f, 60f);
+		assertFalse(stream.step(16, 0f, 60f));
+		assertEquals(60f, stream.getValue(), 0f);
+	}
+
+	/**
+	 * 两种平滑方式都在有限帧内到达目标值并返回false，之后不再请求帧。
+	 */
+	@Test
+	public void settlesOnTarget() {
+		for (int smoothing : new int[] { LemonProgressStream.SMOOTHING_EMA,
+				LemonProgressStream.SMOOTHING_CRITICALLY_DAMPED }) {
+			LemonProgressStream stream = new LemonProgressStream();
+			stream.setSmoothing(smoothing);
+			stream.reset(0f);
+			stream.push(0, 50f);
+			assertTrue(stream.step(0, 0f, 100f));
+			long time = 0;
+			int frames = 0;
+			while (stream.step(time += 16, 0f, 100f)) {
+				assertTrue(++frames < 200);
+			}
+			assertEquals(50f, stream.getValue(), 0f);
+			assertFalse(stream.step(time + 16, 0f, 100f));
+		}
+	}
+
+	/**
+	 * 显示值带着朝向旧目标的速度时目标值变为前方不远处，显示值不会越过新的目标值。
+	 */
+	@Test
+	public void criticallyDampedDoesNotOvershoot() {
+		LemonProgressStream stream = new LemonProgressStream();
+		stream.setSmoothing(LemonProgressStream.SMOOTHING_CRITICALLY_DAMPED);
+		stream.setSmoothingTime(100);
+		stream.reset(0f);
+		stream.push(0, 100f);
+		long time = 0;
+		for (; time <= 64; time += 16) {
+			stream.step(time, 0f, 100f);
+		}
+		// 两个同一时刻的采样不产生外推，目标值固定为55
+		stream.push(64, 55f);
+		stream.push(64, 55f);
+		while (stream.step(time, 0f, 100f)) {
+			assertTrue("第" + time + "毫秒越过目标值：" + stream.getValue(),
+					stream.getValue() <= 55f);
+			time += 16;
+		}
+		assertEquals(55f, stream.getValue(), 0f);
+	}
+}
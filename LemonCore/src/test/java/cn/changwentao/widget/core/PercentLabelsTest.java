@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class PercentLabelsTest {
+
+	private static final int ALLOCATION_CALLS = 1000000;
+
+	/** 测量本身可能分配的少量字节，每次调用哪怕分配一个对象也会远远超过这个值 */
+	private static final long ALLOCATION_SLACK = 4096;
+
+	@Test
+	public void matchesDecimalFormat() {
+		DecimalFormat format = new DecimalFormat("0.0",
+				DecimalFormatSymbols.getInstance(Locale.ROOT));
+		for (int i = 0; i <= 100000; i++) {
+			float percent = i / 1000f;
+			assertLabel(format, percent);
+			assertLabel(format, Math.nextUp(percent));
+			assertLabel(format, Math.nextAfter(percent, 0));
+		}
+		// 恰好在两个取值中间时舍入到偶数
+		assertEquals("0.2", label(0.25f));
+		assertEquals("0.8", label(0.75f));
+		assertEquals("0.3", label(0.35f));
+	}
+
+	@Test
+	public void clampsOutOfRangeValues() {
+		assertEquals(0, PercentLabels.indexOf(-1f));
+		assertEquals(PercentLabels.COUNT - 1, PercentLabels.indexOf(101f));
+		assertEquals("100.0", label(100f));
+	}
+
+	@Test
+	public void lookupDoesNotAllocate() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		// 先预热，让测量的是JIT编译后的代码
+		int sum = lookup(ALLOCATION_CALLS);
+		long before = bean.getThreadAllocatedBytes(threadId);
+		sum += lookup(ALLOCATION_CALLS);
+		long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+		assertTrue(sum != 0);
+		assertTrue("分配了" + allocated + "字节", allocated < ALLOCATION_SLACK);
+	}
+
+	private static int lookup(int count) {
+		int sum = 0;
+		char[] chars = PercentLabels.getChars();
+		for (int i = 0; i < count; i++) {
+			int index = PercentLabels.indexOf((i % 100003) / 1000.03f);
+			sum += chars[PercentLabels.getStart(index)]
+					+ PercentLabels.getLength(index);
+		}
+		return sum;
+	}
+
+	private static void assertLabel(DecimalFormat format, float percent) {
+		assertEquals("percent=" + percent, format.format(percent),
+				label(percent));
+	}
+
+	private static String label(float percent) {
+		int index = PercentLabels.indexOf(percent);
+		return new String(PercentLabels.getChars(),
+				PercentLabels.getStart(index), PercentLabels.getLength(index));
+	}
+}
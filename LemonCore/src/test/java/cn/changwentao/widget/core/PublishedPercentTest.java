@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class PublishedPercentTest {
+
+	private static final int PRODUCER_COUNT = 4;
+	private static final int PUBLISH_COUNT = 200000;
+
+	@Test
+	public void takeReturnsLastPublishedValue() {
+		PublishedPercent slot = new PublishedPercent();
+		assertTrue(Float.isNaN(slot.take()));
+		assertTrue(slot.publish(10f));
+		assertFalse(slot.publish(20f));
+		assertFalse(slot.publish(0f));
+		assertEquals(0f, slot.peek(), 0f);
+		assertEquals(0f, slot.take(), 0f);
+		assertTrue(Float.isNaN(slot.take()));
+		assertTrue(slot.publish(100f));
+	}
+
+	/**
+	 * 多个线程同时发布、一个线程不断取出：每个生产者的值只能按发布顺序被看到，
+	 * publish返回true的次数等于取到值的次数，全部发布结束后最后写入的值胜出。
+	 */
+	@Test
+	public void concurrentPublishersLastWriteWins() throws Exception {
+		final PublishedPercent slot = new PublishedPercent();
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean producing = new AtomicBoolean(true);
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final long[] scheduled = new long[PRODUCER_COUNT];
+		final long[] taken = new long[1];
+
+		Thread[] producers = new Thread[PRODUCER_COUNT];
+		for (int p = 0; p < PRODUCER_COUNT; p++) {
+			final int producer = p;
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					await(start);
+					long count = 0;
+					for (int seq = 0; seq < PUBLISH_COUNT; seq++) {
+						// 值在float中可以精确表示，从中可以还原生产者和序号
+						if (slot.publish(seq * PRODUCER_COUNT + producer)) {
+							count++;
+						}
+					}
+					scheduled[producer] = count;
+				}
+			};
+			producers[p].start();
+		}
+
+		Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				int[] lastSeq = new int[PRODUCER_COUNT];
+				Arrays.fill(lastSeq, -1);
+				long count = 0;
+				await(start);
+				while (true) {
+					boolean more = producing.get();
+					float value = slot.take();
+					if (!Float.isNaN(value)) {
+						count++;
+						int bits = (int) value;
+						int producer = bits % PRODUCER_COUNT;
+						int seq = bits / PRODUCER_COUNT;
+						if (seq <= lastSeq[producer]) {
+							failure.compareAndSet(null, "生产者" + producer
+									+ "的值" + seq + "在" + lastSeq[producer]
+									+ "之后被取出");
+						}
+						lastSeq[producer] = seq;
+					} else if (!more) {
+						break;
+					}
+				}
+				taken[0] = count;
+			}
+		};
+		consumer.start();
+
+		start.countDown();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		producing.set(false);
+		consumer.join();
+
+		assertEquals(null, failure.get());
+		long totalScheduled = 0;
+		for (long count : scheduled) {
+			totalScheduled += count;
+		}
+		assertEquals(totalScheduled, taken[0]);
+		assertTrue(Float.isNaN(slot.peek()));
+
+		assertTrue(slot.publish(42.5f));
+		assertFalse(slot.publish(57.5f));
+		assertEquals(57.5f, slot.take(), 0f);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import android.annotation.SuppressLint;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.view.Choreographer;
+
+/**
+ * 进程内共享的动画驱动器，由一个帧回调驱动所有正在播放动画的{@link PercentLemon}。
+ * <p>
+ * 动画状态以基本类型字段保存在各个PercentLemon中，驱动器每帧直接调用
+ * {@link PercentLemon#doAnimationFrame(long)}写入数值，不使用反射也不装箱。
+ * 没有动画播放时不持有任何PercentLemon，也不注册帧回调。只能在UI线程中使用。
+ * <p>
+ * 驱动器按各PercentLemon的帧率上限跳过过密的帧，被跳过的帧不调用doAnimationFrame，也不会重绘。
+ * 动画由空闲变为播放时读取一次系统的动画时长缩放和省电模式：时长缩放作用于所有按时长播放的动画，
+ * 缩放为0即系统关闭了动画时直接跳到结束状态；省电模式下帧率不超过{@link #POWER_SAVE_MAX_FRAME_RATE}。
+ */
+final class LemonAnimationDriver {
+
+	/** 不支持Choreographer的系统上使用的帧间隔 */
+	private static final long FALLBACK_FRAME_DELAY = 10;
+
+	/** 省电模式下的帧率上限 */
+	static final int POWER_SAVE_MAX_FRAME_RATE = 30;
+
+	/** 判断帧间隔是否达到帧率上限时允许的误差，避免垂直同步的时间抖动使本应播放的帧被跳过 */
+	private static final float FRAME_SLOP_MILLIS = 4f;
+
+	/** 没有固定动画时长缩放，使用系统设置 */
+	static final float NO_DURATION_SCALE_OVERRIDE = -1f;
+
+	/** Android 5.0的API级别，当前编译版本中没有对应的常量 */
+	private static final int SDK_LOLLIPOP = 21;
+
+	private static LemonAnimationDriver sInstance;
+
+	private final ArrayList<PercentLemon> mLemons = new ArrayList<PercentLemon>();
+	private boolean mFrameScheduled = false;
+
+	private Choreographer.FrameCallback mFrameCallback;
+	private Handler mHandler;
+	private Runnable mFrameRunnable;
+
+	/** 没有单独设置帧率上限的PercentLemon使用的全局上限，0表示不限制 */
+	private int mDefaultMaxFrameRate = PercentLemon.FRAME_RATE_UNLIMITED;
+
+	/** 最近一次读取的系统状态 */
+	private float mDurationScale = 1f;
+	private boolean mPowerSaveMode = false;
+
+	/** 固定的动画时长缩放，不小于0时代替系统设置 */
+	private float mDurationScaleOverride = NO_DURATION_SCALE_OVERRIDE;
+
+	/** 读取省电模式的方法，只查找一次 */
+	private Method mIsPowerSaveMode;
+	private boolean mPowerSaveLookupDone = false;
+
+	private LemonAnimationDriver() {
+	}
+
+	/**
+	 * 返回共享的动画驱动器，只能在UI线程中调用。
+	 */
+	static LemonAnimationDriver getInstance() {
+		if (sInstance == null) {
+			sInstance = new LemonAnimationDriver();
+		}
+		return sInstance;
+	}
+
+	/**
+	 * 开始驱动给定PercentLemon的动画，重复调用不会重复注册。PercentLemon的所有动画结束后自动移除。
+	 */
+	void start(PercentLemon lemon) {
+		if (mLemons.isEmpty()) {
+			refreshSystemState(lemon.getContext());
+		}
+		if (getDurationScale() == 0 && !lemon.mInAnimationDriver
+				&& !lemon.doAnimationFrame(SystemClock.uptimeMillis())) {
+			// 系统关闭了动画，按时长播放的动画在上面的调用中已经到达结束状态
+			return;
+		}
+		if (!lemon.mInAnimationDriver) {
+			lemon.mInAnimationDriver = true;
+			mLemons.add(lemon);
+		}
+		scheduleFrame();
+	}
+
+	/**
+	 * 返回当前正在播放动画的PercentLemon数量。
+	 */
+	int getActiveCount() {
+		return mLemons.size();
+	}
+
+	void setDefaultMaxFrameRate(int frameRate) {
+		mDefaultMaxFrameRate = frameRate;
+	}
+
+	int getDefaultMaxFrameRate() {
+		return mDefaultMaxFrameRate;
+	}
+
+	/**
+	 * 返回系统的动画时长缩放，0表示系统关闭了动画。
+	 */
+	float getDurationScale() {
+		return mDurationScaleOverride >= 0 ? mDurationScaleOverride
+				: mDurationScale;
+	}
+
+	/**
+	 * 固定动画时长缩放，忽略系统设置，供{@link LemonBenchmark}使用确定的时钟。
+	 * 传入{@link #NO_DURATION_SCALE_OVERRIDE}恢复使用系统设置。
+	 */
+	void setDurationScaleOverride(float scale) {
+		mDurationScaleOverride = scale;
+	}
+
+	float getDurationScaleOverride() {
+		return mDurationScaleOverride;
+	}
+
+	boolean isPowerSaveMode() {
+		return mPowerSaveMode;
+	}
+
+	// 返回给定PercentLemon实际使用的帧率上限，0表示不限制
+	private int getMaxFrameRate(PercentLemon lemon) {
+		int frameRate = lemon.getMaxFrameRate();
+		if (frameRate == PercentLemon.FRAME_RATE_DEFAULT) {
+			frameRate = mDefaultMaxFrameRate;
+		}
+		if (mPowerSaveMode
+				&& (frameRate == PercentLemon.FRAME_RATE_UNLIMITED
+						|| frameRate > POWER_SAVE_MAX_FRAME_RATE)) {
+			frameRate = POWER_SAVE_MAX_FRAME_RATE;
+		}
+		return frameRate;
+	}
+
+	@SuppressLint({ "NewApi", "InlinedApi" })
+	@SuppressWarnings("deprecation")
+	private void refreshSystemState(Context context) {
+		ContentResolver resolver = context.getContentResolver();
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			mDurationScale = Settings.Global.getFloat(resolver,
+					Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+		} else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			mDurationScale = Settings.System.getFloat(resolver,
+					Settings.System.ANIMATOR_DURATION_SCALE, 1f);
+		}
+		if (mDurationScale < 0) {
+			mDurationScale = 1f;
+		}
+		mPowerSaveMode = queryPowerSaveMode(context);
+	}
+
+	// PowerManager.isPowerSaveMode()在Android 5.0中加入，高于当前编译版本，因此通过反射调用
+	private boolean queryPowerSaveMode(Context context) {
+		if (Build.VERSION.SDK_INT < SDK_LOLLIPOP) {
+			return false;
+		}
+		if (!mPowerSaveLookupDone) {
+			mPowerSaveLookupDone = true;
+			try {
+				mIsPowerSaveMode = PowerManager.class
+						.getMethod("isPowerSaveMode");
+			} catch (NoSuchMethodException e) {
+				mIsPowerSaveMode = null;
+			}
+		}
+		if (mIsPowerSaveMode == null) {
+			return false;
+		}
+		Object powerManager = context.getSystemService(Context.POWER_SERVICE);
+		try {
+			return Boolean.TRUE.equals(mIsPowerSaveMode.invoke(powerManager));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	@SuppressLint("NewApi")
+	private void scheduleFrame() {
+		if (mFrameScheduled) {
+			return;
+		}
+		mFrameScheduled = true;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			if (mFrameCallback == null) {
+				mFrameCallback = new Choreographer.FrameCallback() {
+
+					@Override
+					public void doFrame(long frameTimeNanos) {
+						LemonAnimationDriver.this
+								.doFrame(frameTimeNanos / 1000000);
+					}
+				};
+			}
+			Choreographer.getInstance().postFrameCallback(mFrameCallback);
+		} else {
+			if (mHandler == null) {
+				mHandler = new Handler(Looper.getMainLooper());
+				mFrameRunnable = new Runnable() {
+
+					@Override
+					public void run() {
+						doFrame(SystemClock.uptimeMillis());
+					}
+				};
+			}
+			mHandler.postDelayed(mFrameRunnable, FALLBACK_FRAME_DELAY);
+		}
+	}
+
+	private void doFrame(long frameTimeMillis) {
+		mFrameScheduled = false;
+		ArrayList<PercentLemon> lemons = mLemons;
+		int count = lemons.size();
+		int alive = 0;
+		for (int i = 0; i < count; i++) {
+			PercentLemon lemon = lemons.get(i);
+			int frameRate = getMaxFrameRate(lemon);
+			if (frameRate > 0
+					&& lemon.mLastAnimationFrameTime >= 0
+					&& frameTimeMillis - lemon.mLastAnimationFrameTime < 1000f
+							/ frameRate - FRAME_SLOP_MILLIS) {
+				// 距离上一次推进的时间不足帧率上限对应的间隔，跳过这一帧
+				lemon.mSkippedFrameCount++;
+				lemons.set(alive++, lemon);
+				continue;
+			}
+			lemon.mLastAnimationFrameTime = frameTimeMillis;
+			if (lemon.doAnimationFrame(frameTimeMillis)) {
+				lemons.set(alive++, lemon);
+			} else {
+				lemon.mInAnimationDriver = false;
+				lemon.mLastAnimationFrameTime = -1;
+			}
+		}
+		// 回调中新启动动画的PercentLemon追加在末尾
+		for (int i = count; i < lemons.size(); i++) {
+			lemons.set(alive++, lemons.get(i));
+		}
+		for (int i = lemons.size() - 1; i >= alive; i--) {
+			lemons.remove(i);
+		}
+		if (!lemons.isEmpty()) {
+			scheduleFrame();
+		}
+	}
+
+	/**
+	 * 与AccelerateDecelerateInterpolator相同的插值曲线，也是属性动画的默认插值曲线。
+	 */
+	static float interpolate(float input) {
+		return (float) (Math.cos((input + 1) * Math.PI) / 2.0f) + 0.5f;
+	}
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import java.lang.reflect.Method;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+
+/**
+ * PercentLemon的绘制性能测试工具，不依赖真实的屏幕刷新。
+ * <p>
+ * 使用确定的时钟逐帧推进{@link PercentLemon#animatToPercent(float)}动画，每帧记录onMeasure和onDraw的耗时、
+ * 分配的字节数以及向Canvas发出的绘制调用次数。分配的字节数通过com.sun.management.ThreadMXBean读取，
+ * 只在提供该接口的JVM上可用，例如Robolectric测试；在ART上报告为不可用。绘制目标为离屏Bitmap，因此可以在任何
+ * 能够创建View的环境中运行，不需要把View添加到窗口。
+ * 测试期间动画时长缩放固定为1，结果不受系统开发者选项中动画时长设置的影响。
+ * <p>
+ * {@link Report#toString()}输出固定格式的文本，便于在不同提交之间比较。
+ * <p>
+ * {@link #measureConstruction(Context, AttributeSet, int)}测量大量创建PercentLemon时的构造耗时和每个实例保留的堆内存。
+ * <p>
+ * 此类不属于库的公开API，只供同一个包中的测试代码使用，例如LemonTest模块中与库在同一个类加载器中运行的Robolectric测试。
+ */
+final class LemonBenchmark {
+
+	/** 默认帧间隔，单位毫秒 */
+	public static final long DEFAULT_FRAME_INTERVAL = 16;
+
+	/** 单次测试最多记录的帧数 */
+	private static final int MAX_FRAMES = 1024;
+
+	/** 构造测试默认创建的实例数量 */
+	public static final int DEFAULT_CONSTRUCTION_COUNT = 10000;
+
+	/** 当前运行环境不能统计分配时{@link Report#getAllocationBytes(int)}的返回值 */
+	public static final long ALLOCATION_UNAVAILABLE = -1;
+
+	private final PercentLemon mLemon;
+	private long mFrameInterval = DEFAULT_FRAME_INTERVAL;
+	private boolean mCountAllocations = true;
+	private boolean mRasterize = true;
+
+	/**
+	 * @param lemon
+	 *            被测试的PercentLemon，可以由布局文件加载以使用与应用中相同的属性
+	 */
+	public LemonBenchmark(PercentLemon lemon) {
+		mLemon = lemon;
+	}
+
+	/**
+	 * 设置确定时钟的帧间隔，默认为16毫秒。
+	 *
+	 * @param frameInterval
+	 *            帧间隔，单位毫秒
+	 * @throws IllegalArgumentException
+	 *             如果帧间隔小于1
+	 */
+	public void setFrameInterval(long frameInterval) {
+		if (frameInterval < 1) {
+			throw new IllegalArgumentException("帧间隔必须大于0");
+		}
+		mFrameInterval = frameInterval;
+	}
+
+	/**
+	 * 设置是否统计每帧分配的字节数，默认统计。运行环境不支持时此设置不起作用，结果报告为不可用。
+	 */
+	public void setCountAllocations(boolean countAllocations) {
+		mCountAllocations = countAllocations;
+	}
+
+	/**
+	 * 设置是否真正绘制到离屏Bitmap，默认绘制。关闭后Canvas只统计绘制调用次数，不执行绘制，
+	 * 分配的字节数只包括PercentLemon自身的分配。在Robolectric中运行时应当关闭：它的Canvas不绘制像素，
+	 * 而是把每次绘制调用记录到列表中，这些分配会被计入结果。
+	 */
+	public void setRasterize(boolean rasterize) {
+		mRasterize = rasterize;
+	}
+
+	/**
+	 * 以给定的尺寸测量并布局PercentLemon，然后播放一次到目标百分比的动画并逐帧记录。
+	 * 只能在UI线程中调用。
+	 *
+	 * @param widthMeasureSpec
+	 *            宽度测量规格
+	 * @param heightMeasureSpec
+	 *            高度测量规格
+	 * @param toPercent
+	 *            动画的目标百分比
+	 * @return 测试结果
+	 */
+	public Report run(int widthMeasureSpec, int heightMeasureSpec,
+			float toPercent) {
+		PercentLemon lemon = mLemon;
+		lemon.measure(widthMeasureSpec, heightMeasureSpec);
+		int width = lemon.getMeasuredWidth();
+		int height = lemon.getMeasuredHeight();
+		lemon.layout(0, 0, width, height);
+
+		Bitmap bitmap = Bitmap.createBitmap(Math.max(width, 1),
+				Math.max(height, 1), Bitmap.Config.ARGB_8888);
+		CountingCanvas canvas = new CountingCanvas(bitmap, mRasterize);
+		AllocationCounter allocations = mCountAllocations ? AllocationCounter
+				.create() : null;
+		Report report = new Report(width, height, mFrameInterval,
+				allocations != null);
+
+		// 固定时长缩放为1，使结果不受系统“动画程序时长调整”设置的影响
+		LemonAnimationDriver driver = LemonAnimationDriver.getInstance();
+		float previousScale = driver.getDurationScaleOverride();
+		driver.setDurationScaleOverride(1f);
+		try {
+			lemon.animatToPercent(toPercent);
+			long frameTime = 0;
+			boolean running = true;
+			while (running && report.mFrameCount < MAX_FRAMES) {
+				long allocatedBefore = allocations != null ? allocations
+						.read() : 0;
+				running = lemon.doAnimationFrame(frameTime);
+
+				long start = System.nanoTime();
+				lemon.onMeasure(widthMeasureSpec, heightMeasureSpec);
+				long measured = System.nanoTime();
+				canvas.mCallCount = 0;
+				lemon.onDraw(canvas);
+				long drawn = System.nanoTime();
+
+				int frame = report.mFrameCount++;
+				report.mMeasureNanos[frame] = measured - start;
+				report.mDrawNanos[frame] = drawn - measured;
+				report.mCanvasCalls[frame] = canvas.mCallCount;
+				report.mPercents[frame] = lemon.getPercent();
+				if (allocations != null) {
+					report.mAllocBytes[frame] = allocations
+							.since(allocatedBefore);
+				}
+				frameTime += mFrameInterval;
+			}
+		} finally {
+			driver.setDurationScaleOverride(previousScale);
+			bitmap.recycle();
+		}
+		return report;
+	}
+
+	/**
+	 * 以相同的属性连续创建count个PercentLemon，记录总耗时和所有实例保留的堆内存。测试开始前清空样式缓存，
+	 * 因此结果包含一次属性解析和count-1次缓存命中，与加载一个包含大量圆环的布局相同。
+	 * 测量内存前会请求垃圾回收，结果只是近似值。只能在UI线程中调用。
+	 *
+	 * @param context
+	 *            创建PercentLemon使用的Context
+	 * @param attrs
+	 *            xml属性，可以为null
+	 * @param count
+	 *            创建的实例数量，通常为{@link #DEFAULT_CONSTRUCTION_COUNT}
+	 * @return 测试结果
+	 * @throws IllegalArgumentException
+	 *             如果数量小于1
+	 */
+	public static ConstructionReport measureConstruction(Context context,
+			AttributeSet attrs, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("数量必须大于0");
+		}
+		LemonStyle.clearCache();
+		PercentLemon[] lemons = new PercentLemon[count];
+		long usedBefore = getUsedMemory();
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			lemons[i] = new PercentLemon(context, attrs);
+		}
+		long nanos = System.nanoTime() - start;
+		long usedAfter = getUsedMemory();
+		// 测量内存时所有实例必须仍然可达
+		return new ConstructionReport(lemons.length, nanos, usedAfter
+				- usedBefore);
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		runtime.gc();
+		System.runFinalization();
+		runtime.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * 读取当前线程累计分配的字节数。com.sun.management.ThreadMXBean不在Android的类库中，因此通过反射调用，
+	 * 参数数组只创建一次，每次读取本身分配的字节数（返回值的装箱）在预热后测出并从结果中扣除。
+	 */
+	private static final class AllocationCounter {
+		/** 测量读取本身分配的字节数之前的预热次数，使反射调用完成膨胀和编译 */
+		private static final int WARM_UP_READS = 1000;
+
+		private final Object mThreadBean;
+		private final Method mGetAllocatedBytes;
+		private final Object[] mArgs;
+		private long mReadBytes;
+
+		private AllocationCounter(Object threadBean, Method getAllocatedBytes) {
+			mThreadBean = threadBean;
+			mGetAllocatedBytes = getAllocatedBytes;
+			mArgs = new Object[] { Thread.currentThread().getId() };
+		}
+
+		/**
+		 * 返回当前线程上的计数器，运行环境不支持时返回null。
+		 */
+		static AllocationCounter create() {
+			try {
+				Object threadBean = Class
+						.forName("java.lang.management.ManagementFactory")
+						.getMethod("getThreadMXBean").invoke(null);
+				Class<?> type = Class
+						.forName("com.sun.management.ThreadMXBean");
+				if (!type.isInstance(threadBean)
+						|| !Boolean.TRUE.equals(type.getMethod(
+								"isThreadAllocatedMemoryEnabled").invoke(
+								threadBean))) {
+					return null;
+				}
+				AllocationCounter counter = new AllocationCounter(threadBean,
+						type.getMethod("getThreadAllocatedBytes", long.class));
+				if (counter.read() < 0) {
+					return null;
+				}
+				for (int i = 0; i < WARM_UP_READS; i++) {
+					counter.read();
+				}
+				long readBytes = Long.MAX_VALUE;
+				for (int i = 0; i < 16; i++) {
+					long before = counter.read();
+					readBytes = Math.min(readBytes, counter.read() - before);
+				}
+				counter.mReadBytes = readBytes;
+				return counter;
+			} catch (Exception e) {
+				return null;
+			}
+		}
+
+		long read() {
+			try {
+				return ((Long) mGetAllocatedBytes.invoke(mThreadBean, mArgs))
+						.longValue();
+			} catch (Exception e) {
+				throw new IllegalStateException("读取分配的字节数失败", e);
+			}
+		}
+
+		/**
+		 * 返回自给定的{@link #read()}结果以来分配的字节数，不包括两次读取本身。
+		 */
+		long since(long before) {
+			return Math.max(0, read() - before - mReadBytes);
+		}
+	}
+
+	/**
+	 * 统计绘制调用次数的Canvas，PercentLemon用到的绘制方法都经过这里，包括字形图集的drawBitmap。回放的Picture计为一次调用。
+	 * 不绘制时只计数，不调用Canvas的实现，save和restoreToCount的层数也在这里记录，translate直接忽略。
+	 */
+	private static final class CountingCanvas extends Canvas {
+		private final boolean mRasterize;
+		private int mSaveCount = 1;
+		int mCallCount;
+
+		CountingCanvas(Bitmap bitmap, boolean rasterize) {
+			super(bitmap);
+			mRasterize = rasterize;
+		}
+
+		@Override
+		public int save() {
+			return mRasterize ? super.save() : mSaveCount++;
+		}
+
+		@Override
+		public void restoreToCount(int saveCount) {
+			if (mRasterize) {
+				super.restoreToCount(saveCount);
+			} else {
+				mSaveCount = saveCount;
+			}
+		}
+
+		@Override
+		public void translate(float dx, float dy) {
+			if (mRasterize) {
+				super.translate(dx, dy);
+			}
+		}
+
+		@Override
+		public void drawCircle(float cx, float cy, float radius, Paint paint) {
+			mCallCount++;
+			if (mRasterize) {
+				super.drawCircle(cx, cy, radius, paint);
+			}
+		}
+
+		@Override
+		public void drawArc(RectF oval, float startAngle, float sweepAngle,
+				boolean useCenter, Paint paint) {
+			mCallCount++;
+			if (mRasterize) {
+				super.drawArc(oval, startAngle, sweepAngle, useCenter, paint);
+			}
+		}
+
+		@Override
+		public void drawText(char[] text, int index, int count, float x,
+				float y, Paint paint) {
+			mCallCount++;
+			if (mRasterize) {
+				super.drawText(text, index, count, x, y, paint);
+			}
+		}
+
+		@Override
+		public void drawText(String text, float x, float y, Paint paint) {
+			mCallCount++;
+			if (mRasterize) {
+				super.drawText(text, x, y, paint);
+			}
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, float left, float top,
+				Paint paint) {
+			mCallCount++;
+			if (mRasterize) {
+				super.drawBitmap(bitmap, left, top, paint);
+			}
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+			mCallCount++;
+			if (mRasterize) {
+				super.drawBitmap(bitmap, src, dst, paint);
+			}
+		}
+
+		@Override
+		public void drawPicture(Picture picture) {
+			mCallCount++;
+			if (mRasterize) {
+				super.drawPicture(picture);
+			}
+		}
+	}
+
+	/**
+	 * 一次测试的逐帧记录。
+	 */
+	static final class Report {
+		private final int mWidth;
+		private final int mHeight;
+		private final long mFrameInterval;
+		private final boolean mAllocationsCounted;
+		int mFrameCount;
+		final long[] mMeasureNanos = new long[MAX_FRAMES];
+		final long[] mDrawNanos = new long[MAX_FRAMES];
+		final int[] mCanvasCalls = new int[MAX_FRAMES];
+		final long[] mAllocBytes = new long[MAX_FRAMES];
+		final float[] mPercents = new float[MAX_FRAMES];
+
+		Report(int width, int height, long frameInterval,
+				boolean allocationsCounted) {
+			mWidth = width;
+			mHeight = height;
+			mFrameInterval = frameInterval;
+			mAllocationsCounted = allocationsCounted;
+		}
+
+		public int getFrameCount() {
+			return mFrameCount;
+		}
+
+		public long getMeasureNanos(int frame) {
+			return mMeasureNanos[frame];
+		}
+
+		public long getDrawNanos(int frame) {
+			return mDrawNanos[frame];
+		}
+
+		public int getCanvasCallCount(int frame) {
+			return mCanvasCalls[frame];
+		}
+
+		public float getPercent(int frame) {
+			return mPercents[frame];
+		}
+
+		/**
+		 * 返回是否统计了分配的字节数。
+		 */
+		public boolean isAllocationCounted() {
+			return mAllocationsCounted;
+		}
+
+		/**
+		 * 返回一帧中推进动画、测量和绘制分配的字节数，没有统计时返回{@link #ALLOCATION_UNAVAILABLE}。
+		 */
+		public long getAllocationBytes(int frame) {
+			return mAllocationsCounted ? mAllocBytes[frame]
+					: ALLOCATION_UNAVAILABLE;
+		}
+
+		public long getTotalDrawNanos() {
+			return sum(mDrawNanos);
+		}
+
+		public long getMaxDrawNanos() {
+			return max(mDrawNanos);
+		}
+
+		public long getTotalMeasureNanos() {
+			return sum(mMeasureNanos);
+		}
+
+		public long getMaxMeasureNanos() {
+			return max(mMeasureNanos);
+		}
+
+		/**
+		 * 返回所有帧分配的字节数之和，没有统计时返回{@link #ALLOCATION_UNAVAILABLE}。
+		 */
+		public long getTotalAllocationBytes() {
+			return mAllocationsCounted ? sum(mAllocBytes)
+					: ALLOCATION_UNAVAILABLE;
+		}
+
+		private long sum(long[] values) {
+			long total = 0;
+			for (int i = 0; i < mFrameCount; i++) {
+				total += values[i];
+			}
+			return total;
+		}
+
+		private long max(long[] values) {
+			long max = 0;
+			for (int i = 0; i < mFrameCount; i++) {
+				max = Math.max(max, values[i]);
+			}
+			return max;
+		}
+
+		/**
+		 * 输出制表符分隔的测试结果：先是汇总信息，然后每帧一行。没有统计分配时分配列输出unavailable。
+		 */
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(64 + mFrameCount * 48);
+			sb.append("size\t").append(mWidth).append('x').append(mHeight)
+					.append('\n');
+			sb.append("frameInterval\t").append(mFrameInterval).append('\n');
+			sb.append("frames\t").append(mFrameCount).append('\n');
+			sb.append("measureNanos\t").append(getTotalMeasureNanos())
+					.append('\t').append(getMaxMeasureNanos()).append('\n');
+			sb.append("drawNanos\t").append(getTotalDrawNanos())
+					.append('\t').append(getMaxDrawNanos()).append('\n');
+			sb.append("allocBytes\t");
+			appendAllocation(sb, getTotalAllocationBytes()).append('\n');
+			sb.append("frame\tpercent\tmeasureNanos\tdrawNanos\tcanvasCalls\tallocBytes\n");
+			for (int i = 0; i < mFrameCount; i++) {
+				sb.append(i).append('\t').append(mPercents[i]).append('\t')
+						.append(mMeasureNanos[i]).append('\t')
+						.append(mDrawNanos[i]).append('\t')
+						.append(mCanvasCalls[i]).append('\t');
+				appendAllocation(sb, getAllocationBytes(i)).append('\n');
+			}
+			return sb.toString();
+		}
+
+		private static StringBuilder appendAllocation(StringBuilder sb,
+				long bytes) {
+			return bytes == ALLOCATION_UNAVAILABLE ? sb.append("unavailable")
+					: sb.append(bytes);
+		}
+	}
+
+	/**
+	 * 一次构造测试的结果。
+	 */
+	static final class ConstructionReport {
+		private final int mCount;
+		private final long mNanos;
+		private final long mRetainedBytes;
+
+		ConstructionReport(int count, long nanos, long retainedBytes) {
+			mCount = count;
+			mNanos = nanos;
+			mRetainedBytes = retainedBytes;
+		}
+
+		public int getCount() {
+			return mCount;
+		}
+
+		public long getTotalNanos() {
+			return mNanos;
+		}
+
+		public long getNanosPerInstance() {
+			return mNanos / mCount;
+		}
+
+		/**
+		 * 返回所有实例保留的堆内存，包括实例共享的样式，单位字节。
+		 */
+		public long getRetainedBytes() {
+			return mRetainedBytes;
+		}
+
+		public long getRetainedBytesPerInstance() {
+			return mRetainedBytes / mCount;
+		}
+
+		/**
+		 * 输出制表符分隔的测试结果，每项一行。
+		 */
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(128);
+			sb.append("instances\t").append(mCount).append('\n');
+			sb.append("constructionNanos\t").append(mNanos).append('\t')
+					.append(getNanosPerInstance()).append('\n');
+			sb.append("retainedBytes\t").append(mRetainedBytes).append('\t')
+					.append(getRetainedBytesPerInstance()).append('\n');
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import java.util.ArrayList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+import android.os.Build;
+import cn.changwentao.widget.core.LemonGeometry;
+
+/**
+ * 在View之外将百分比圆环绘制到Bitmap中，用于通知、桌面小部件和分享图片等场合，可以在任意线程中使用。
+ * <p>
+ * 绘制使用与{@link PercentLemon#onDraw(Canvas)}相同的几何计算和绘制代码，相同样式、相同尺寸时得到相同的像素。
+ * 每个LemonBitmapRenderer持有自己的画笔、画布和文本排版缓存，不使用只能在UI线程中访问的共享图层缓存和字形图集，
+ * 因此样式中的文本模式总是按{@link PercentLemon#TEXT_MODE_SHAPED}处理。所有方法对同一个对象互斥执行，
+ * 需要并行绘制时每个线程使用各自的LemonBitmapRenderer。
+ * <p>
+ * {@link #render(float, int)}从内部的Bitmap池中取出Bitmap，使用完毕后可以通过{@link #release(Bitmap)}归还以便复用。
+ */
+public final class LemonBitmapRenderer {
+
+	/** Bitmap池中最多保留的Bitmap数量 */
+	private static final int MAX_POOL_SIZE = 4;
+
+	private final LemonStyle mStyle;
+	private final LemonRenderer mRenderer;
+	private final Canvas mCanvas = new Canvas();
+	private final RectF mBounds = new RectF();
+	private final ArrayList<Bitmap> mPool = new ArrayList<Bitmap>(
+			MAX_POOL_SIZE);
+
+	/** 最近一次绘制的尺寸及其几何信息，尺寸不变时不重新计算 */
+	private int mWidth = -1;
+	private int mHeight = -1;
+	private LemonGeometry mGeometry;
+
+	/**
+	 * 构建一个按给定样式绘制的LemonBitmapRenderer。
+	 * 
+	 * @param style
+	 *            圆环样式，其中的百分比值、动画和渲染相关的属性不使用
+	 */
+	public LemonBitmapRenderer(LemonStyle style) {
+		mStyle = style;
+		mRenderer = new LemonRenderer(style.getTextColor(),
+				style.getHeartColor(), style.getHeartClickedColor(),
+				style.getSkinStartColor(), style.getSkinEndColor(), true);
+		mRenderer.setSweepGradientEnabled(
+				style.getSkinMode() == PercentLemon.SKIN_MODE_SWEEP_GRADIENT);
+	}
+
+	public LemonStyle getStyle() {
+		return mStyle;
+	}
+
+	/**
+	 * 绘制一个给定尺寸的正方形圆环。返回的Bitmap优先从Bitmap池中取出，内容会被完全覆盖。
+	 * 
+	 * @param percent
+	 *            百分比值0到100之间
+	 * @param size
+	 *            Bitmap的宽度和高度，单位为像素
+	 * @return 绘制好的ARGB_8888格式的Bitmap
+	 * @throws IllegalArgumentException
+	 *             如果百分比值不在0到100之间，或尺寸不大于0
+	 */
+	public synchronized Bitmap render(float percent, int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("尺寸必须大于0");
+		}
+		checkPercent(percent);
+		Bitmap bitmap = obtain(size);
+		draw(bitmap, percent);
+		return bitmap;
+	}
+
+	/**
+	 * 将圆环绘制到调用者提供的Bitmap中，圆环在Bitmap中居中，与同样尺寸且没有内边距的{@link PercentLemon}相同。
+	 * Bitmap原有的内容会被清除。
+	 * 
+	 * @param bitmap
+	 *            可修改的Bitmap
+	 * @param percent
+	 *            百分比值0到100之间
+	 * @throws IllegalArgumentException
+	 *             如果百分比值不在0到100之间，或Bitmap不可修改
+	 */
+	public synchronized void render(Bitmap bitmap, float percent) {
+		checkBitmap(bitmap);
+		checkPercent(percent);
+		draw(bitmap, percent);
+	}
+
+	/**
+	 * 依次将多个百分比值绘制到对应的Bitmap中，所有绘制共用同一套画笔、画布和几何信息。
+	 * 
+	 * @param percents
+	 *            百分比值，每个都在0到100之间
+	 * @param bitmaps
+	 *            可修改的Bitmap，数量与percents相同
+	 * @throws IllegalArgumentException
+	 *             如果数组长度不同、百分比值不在0到100之间，或有Bitmap不可修改
+	 */
+	public synchronized void renderBatch(float[] percents, Bitmap[] bitmaps) {
+		if (percents.length != bitmaps.length) {
+			throw new IllegalArgumentException("百分比值与Bitmap的数量必须相同");
+		}
+		for (int i = 0; i < percents.length; i++) {
+			checkBitmap(bitmaps[i]);
+			checkPercent(percents[i]);
+		}
+		for (int i = 0; i < percents.length; i++) {
+			draw(bitmaps[i], percents[i]);
+		}
+	}
+
+	/**
+	 * 将不再使用的Bitmap归还到Bitmap池中，池已满时直接丢弃。归还后调用者不能再使用此Bitmap。
+	 * 
+	 * @param bitmap
+	 *            {@link #render(float, int)}返回的Bitmap
+	 */
+	public synchronized void release(Bitmap bitmap) {
+		if (mPool.size() < MAX_POOL_SIZE && !bitmap.isRecycled()
+				&& bitmap.isMutable() && !mPool.contains(bitmap)) {
+			mPool.add(bitmap);
+		}
+	}
+
+	/**
+	 * 清空Bitmap池。
+	 */
+	public synchronized void clearPool() {
+		mPool.clear();
+	}
+
+	private Bitmap obtain(int size) {
+		for (int i = mPool.size() - 1; i >= 0; i--) {
+			Bitmap bitmap = mPool.get(i);
+			if (bitmap.getWidth() == size && bitmap.getHeight() == size) {
+				mPool.remove(i);
+				return bitmap;
+			}
+		}
+		return Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+	}
+
+	private void draw(Bitmap bitmap, float percent) {
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		if (width != mWidth || height != mHeight) {
+			mWidth = width;
+			mHeight = height;
+			mGeometry = LemonGeometry.compute(width, height, 0, 0, 0, 0,
+					mStyle.getSkinDepth());
+			mRenderer.setSkinRawDepth(mGeometry.skinRawDepth);
+			mBounds.set(mGeometry.boundsLeft, mGeometry.boundsTop,
+					mGeometry.boundsRight, mGeometry.boundsBottom);
+		}
+		bitmap.eraseColor(0);
+		LemonGeometry geometry = mGeometry;
+		if (geometry.heartRadius <= 0) {
+			return;
+		}
+		Canvas canvas = mCanvas;
+		canvas.setBitmap(bitmap);
+		mRenderer.draw(canvas, geometry.xCenter, geometry.yCenter,
+				geometry.heartRadius, mBounds, percent, mStyle.getHeartColor());
+		// 解除对Bitmap的引用，归还或丢弃Bitmap后画布不会继续持有它。Android 4.0之前不接受null
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+			canvas.setBitmap(null);
+		}
+	}
+
+	private static void checkBitmap(Bitmap bitmap) {
+		if (!bitmap.isMutable()) {
+			throw new IllegalArgumentException("Bitmap必须是可修改的");
+		}
+	}
+
+	private static void checkPercent(float percent) {
+		if (Float.compare(percent, 100) > 0 || Float.compare(percent, 0) < 0) {
+			throw new IllegalArgumentException("百分比值必须在0到100之间");
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.os.Build;
+import cn.changwentao.widget.core.LemonGeometry;
+
+/**
+ * {@link PercentLemon}硬件绘制时的绘制命令录制。
+ * <p>
+ * 一帧分为两部分录制到{@link Picture}中：中心圆部分只取决于中心圆颜色，圆环部分包含圆弧、灰色轨道和中心文本，
+ * 只取决于百分比值。两部分的输入都还取决于几何信息和{@link LemonRenderer}的样式版本号。
+ * 父View重绘等原因导致输入未改变的重复绘制直接回放录制，只有输入改变的部分重新录制，例如百分比改变时中心圆部分仍然回放。
+ * <p>
+ * 为了不让动画的每一帧都多一次录制，某部分的输入第一次出现时直接绘制，连续两帧输入相同时才录制。
+ * <p>
+ * 硬件加速时View的任何重绘都会重新执行onDraw，生成整个View的显示列表，例如中心圆点击动画的每一帧都会重新绘制
+ * 不变的圆弧、灰色轨道和文本。回放录制只需一次{@link Canvas#drawPicture(Picture)}，代替逐条绘制调用和计算颜色、
+ * 排版文本的工作。中心圆部分本身只有一次绘制调用，回放它没有收益，只是让两部分的录制方式一致。
+ * 软件layer已经缓存了像素，在软件画布上回放仍要重新光栅化每条命令，因此只在硬件画布上使用，见{@link #canRecord(Canvas)}。
+ */
+final class LemonDrawRecording {
+
+	/** 硬件加速开始支持{@link Canvas#drawPicture(Picture)}的系统版本，即Android 6.0 */
+	private static final int SDK_HARDWARE_PICTURE = 23;
+
+	private final Part mHeart = new Part();
+	private final Part mRing = new Part();
+
+	/** 这一帧是否绘制了圆环部分 */
+	private boolean mRingBegun;
+
+	/**
+	 * 判断是否应在给定的画布上录制：只在支持绘制Picture的硬件画布上录制。
+	 */
+	static boolean canRecord(Canvas canvas) {
+		return canvas.isHardwareAccelerated()
+				&& Build.VERSION.SDK_INT >= SDK_HARDWARE_PICTURE;
+	}
+
+	/**
+	 * 开始绘制一帧的中心圆部分。
+	 *
+	 * @return 需要绘制时返回绘制使用的画布，之后必须调用{@link #endHeart(Canvas)}；回放了录制时返回null
+	 */
+	Canvas beginHeart(Canvas canvas, int width, int height,
+			LemonGeometry geometry, int generation, int heartColor) {
+		mRingBegun = false;
+		return mHeart.begin(canvas, width, height, geometry, generation,
+				heartColor, 0);
+	}
+
+	void endHeart(Canvas canvas) {
+		mHeart.end(canvas);
+	}
+
+	/**
+	 * 开始绘制圆环部分。
+	 *
+	 * @param valueKey
+	 *            百分比值的浮点位表示，分段显示时为分段数值的版本号
+	 * @param segmented
+	 *            是否为分段显示
+	 * @return 需要绘制时返回绘制使用的画布，之后必须调用{@link #endRing(Canvas)}；回放了录制时返回null
+	 */
+	Canvas beginRing(Canvas canvas, int width, int height,
+			LemonGeometry geometry, int generation, int valueKey,
+			boolean segmented) {
+		mRingBegun = true;
+		return mRing.begin(canvas, width, height, geometry, generation,
+				valueKey, segmented ? 1 : 0);
+	}
+
+	void endRing(Canvas canvas) {
+		mRing.end(canvas);
+	}
+
+	/**
+	 * 返回刚绘制完的一帧是否完全由回放得到。
+	 */
+	boolean isFrameReplayed() {
+		return mHeart.mReplayed && (!mRingBegun || mRing.mReplayed);
+	}
+
+	/**
+	 * 返回刚绘制完的一帧中由回放得到的部分数量，0到2。
+	 */
+	int getReplayedPartCount() {
+		int count = mHeart.mReplayed ? 1 : 0;
+		if (mRingBegun && mRing.mReplayed) {
+			count++;
+		}
+		return count;
+	}
+
+	private static final class Part {
+		final Picture mPicture = new Picture();
+		LemonGeometry mGeometry;
+		int mGeneration;
+		int mKey;
+		int mFlags;
+		boolean mRecorded;
+		boolean mRecording;
+		boolean mReplayed;
+
+		Canvas begin(Canvas canvas, int width, int height,
+				LemonGeometry geometry, int generation, int key, int flags) {
+			mReplayed = false;
+			if (geometry == mGeometry && generation == mGeneration
+					&& key == mKey && flags == mFlags) {
+				if (mRecorded) {
+					canvas.drawPicture(mPicture);
+					mReplayed = true;
+					return null;
+				}
+				mRecording = true;
+				return mPicture.beginRecording(width, height);
+			}
+			mGeometry = geometry;
+			mGeneration = generation;
+			mKey = key;
+			mFlags = flags;
+			mRecorded = false;
+			return canvas;
+		}
+
+		void end(Canvas canvas) {
+			if (mRecording) {
+				mPicture.endRecording();
+				mRecording = false;
+				mRecorded = true;
+				canvas.drawPicture(mPicture);
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Paint.FontMetrics;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+/**
+ * 中心百分比文本的字形图集。
+ * <p>
+ * 百分比文本只会用到0到9、小数点和百分号共12个字形。图集将这些字形按数字字号和百分号字号预先光栅化到一张
+ * {@link Bitmap.Config#ALPHA_8}格式的Bitmap中，绘制时逐个字形复制Bitmap的子区域，不再经过文本排版。
+ * 图集只保存透明度，颜色和颜色过滤器由绘制时的画笔决定，因此不同颜色的圆环可以共用同一个图集。
+ * <p>
+ * 图集以中心圆半径和字体为键在进程内共享，按最近最少使用的顺序淘汰，总内存不超过设定的上限。
+ * 被淘汰的图集释放位图，持有它的{@link LemonTextLayout}在下一次排版或绘制时发现图集已淘汰，改为直接绘制文本，
+ * 因此上限同时限制了仍在使用中的图集。只能在UI线程中使用。
+ */
+final class LemonGlyphAtlas {
+
+	/** 所有图集的默认内存上限，单位字节 */
+	static final int DEFAULT_MAX_BYTES = 512 * 1024;
+
+	/** 图集中的字形，顺序与{@link #glyphIndex(char)}一致 */
+	private static final String GLYPHS = "0123456789.%";
+	private static final int SIGN_INDEX = 11;
+
+	/** 字形四周留出的空白，容纳超出字宽的笔画和抗锯齿边缘 */
+	private static final int PADDING = 2;
+
+	private static final LinkedHashMap<AtlasKey, LemonGlyphAtlas> sAtlases = new LinkedHashMap<AtlasKey, LemonGlyphAtlas>(
+			8, 0.75f, true);
+	private static final AtlasKey sProbeKey = new AtlasKey();
+	private static int sMaxBytes = DEFAULT_MAX_BYTES;
+	private static int sSize;
+
+	/** 绘制时复用的源区域和目标区域 */
+	private static final Rect sSrc = new Rect();
+	private static final RectF sDst = new RectF();
+
+	/** 图集位图，在{@link #rasterize()}之前和被淘汰之后为null */
+	private Bitmap mBitmap;
+
+	/** 光栅化字形使用的画笔，光栅化后释放 */
+	private TextPaint mNumberPaint;
+	private TextPaint mSignPaint;
+
+	/** 各字形在图集中的左边界，最后一项为图集宽度 */
+	private final int[] mCellLefts = new int[GLYPHS.length() + 1];
+
+	/** 各字形的步进宽度 */
+	private final float[] mAdvances = new float[GLYPHS.length()];
+
+	/** 基线在图集中的纵坐标 */
+	private final int mBaseline;
+
+	/** 图集高度 */
+	private final int mHeight;
+
+	// 只测量字形并计算图集尺寸，不分配位图，确认没有超出内存上限后再调用rasterize()
+	private LemonGlyphAtlas(int heartRadius, Typeface typeface) {
+		TextPaint numberPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+		numberPaint.setTypeface(typeface);
+		numberPaint.setTextSize(heartRadius / 2);
+		TextPaint signPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+		signPaint.setTypeface(typeface);
+		signPaint.setTextSize(heartRadius / 4);
+
+		FontMetrics fm = numberPaint.getFontMetrics();
+		mBaseline = PADDING + (int) Math.ceil(-fm.ascent);
+		mHeight = mBaseline + (int) Math.ceil(fm.descent) + PADDING;
+
+		int left = 0;
+		for (int i = 0; i < GLYPHS.length(); i++) {
+			TextPaint paint = i == SIGN_INDEX ? signPaint : numberPaint;
+			mAdvances[i] = paint.measureText(GLYPHS, i, i + 1);
+			mCellLefts[i] = left;
+			left += (int) Math.ceil(mAdvances[i]) + 2 * PADDING;
+		}
+		mCellLefts[GLYPHS.length()] = left;
+		mNumberPaint = numberPaint;
+		mSignPaint = signPaint;
+	}
+
+	private void rasterize() {
+		mBitmap = Bitmap.createBitmap(mCellLefts[GLYPHS.length()], mHeight,
+				Bitmap.Config.ALPHA_8);
+		Canvas canvas = new Canvas(mBitmap);
+		for (int i = 0; i < GLYPHS.length(); i++) {
+			TextPaint paint = i == SIGN_INDEX ? mSignPaint : mNumberPaint;
+			canvas.drawText(GLYPHS, i, i + 1, mCellLefts[i] + PADDING,
+					mBaseline, paint);
+		}
+		mNumberPaint = null;
+		mSignPaint = null;
+	}
+
+	/**
+	 * 返回给定中心圆半径和字体的图集，没有时创建。图集超过内存上限时返回null，调用者应直接绘制文本。
+	 */
+	static LemonGlyphAtlas obtain(int heartRadius, Typeface typeface) {
+		AtlasKey key = sProbeKey;
+		key.set(heartRadius, typeface);
+		LemonGlyphAtlas atlas = sAtlases.get(key);
+		if (atlas != null) {
+			return atlas;
+		}
+		if (heartRadius <= 0) {
+			return null;
+		}
+		atlas = new LemonGlyphAtlas(heartRadius, typeface);
+		int byteCount = atlas.getByteCount();
+		if (byteCount > sMaxBytes) {
+			return null;
+		}
+		atlas.rasterize();
+		AtlasKey storedKey = new AtlasKey();
+		storedKey.set(heartRadius, typeface);
+		sAtlases.put(storedKey, atlas);
+		sSize += byteCount;
+		trimToSize(sMaxBytes);
+		return atlas;
+	}
+
+	/**
+	 * 设置所有图集的内存上限，超出的部分立即淘汰。
+	 */
+	static void setMaxBytes(int maxBytes) {
+		sMaxBytes = maxBytes;
+		trimToSize(maxBytes);
+	}
+
+	/**
+	 * 清空共享的图集。
+	 */
+	static void evictAll() {
+		trimToSize(0);
+	}
+
+	private static void trimToSize(int maxBytes) {
+		Iterator<Map.Entry<AtlasKey, LemonGlyphAtlas>> it = sAtlases
+				.entrySet().iterator();
+		while (sSize > maxBytes && it.hasNext()) {
+			LemonGlyphAtlas atlas = it.next().getValue();
+			it.remove();
+			sSize -= atlas.getByteCount();
+			// 位图可能仍被显示列表引用，所以不调用recycle
+			atlas.mBitmap = null;
+		}
+	}
+
+	/**
+	 * 返回图集是否已被淘汰，淘汰后不能再用于测量和绘制。
+	 */
+	boolean isEvicted() {
+		return mBitmap == null;
+	}
+
+	// ALPHA_8格式每像素一个字节，由测量结果得出，不需要先分配位图
+	private int getByteCount() {
+		return mCellLefts[GLYPHS.length()] * mHeight;
+	}
+
+	private static int glyphIndex(char c) {
+		if (c == '.') {
+			return 10;
+		}
+		if (c == '%') {
+			return SIGN_INDEX;
+		}
+		return c - '0';
+	}
+
+	/**
+	 * 返回文本的总步进宽度。
+	 */
+	float measure(char[] chars, int start, int length) {
+		float width = 0;
+		for (int i = start; i < start + length; i++) {
+			width += mAdvances[glyphIndex(chars[i])];
+		}
+		return width;
+	}
+
+	/**
+	 * 返回百分号的步进宽度。
+	 */
+	float getSignAdvance() {
+		return mAdvances[SIGN_INDEX];
+	}
+
+	/**
+	 * 从给定起点绘制数字文本，画笔的颜色即文本颜色。
+	 */
+	void draw(Canvas canvas, char[] chars, int start, int length, float x,
+			float baseline, Paint paint) {
+		for (int i = start; i < start + length; i++) {
+			int index = glyphIndex(chars[i]);
+			drawGlyph(canvas, index, x, baseline, paint);
+			x += mAdvances[index];
+		}
+	}
+
+	/**
+	 * 从给定起点绘制百分号，画笔的颜色即文本颜色。
+	 */
+	void drawSign(Canvas canvas, float x, float baseline, Paint paint) {
+		drawGlyph(canvas, SIGN_INDEX, x, baseline, paint);
+	}
+
+	private void drawGlyph(Canvas canvas, int index, float x, float baseline,
+			Paint paint) {
+		int cellLeft = mCellLefts[index];
+		int cellRight = mCellLefts[index + 1];
+		sSrc.set(cellLeft, 0, cellRight, mHeight);
+		float left = x - PADDING;
+		float top = baseline - mBaseline;
+		sDst.set(left, top, left + cellRight - cellLeft,
+				top + mHeight);
+		canvas.drawBitmap(mBitmap, sSrc, sDst, paint);
+	}
+
+	private static final class AtlasKey {
+		int mHeartRadius;
+		Typeface mTypeface;
+
+		void set(int heartRadius, Typeface typeface) {
+			mHeartRadius = heartRadius;
+			mTypeface = typeface;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof AtlasKey)) {
+				return false;
+			}
+			AtlasKey other = (AtlasKey) o;
+			return mHeartRadius == other.mHeartRadius
+					&& mTypeface == other.mTypeface;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * mHeartRadius
+					+ (mTypeface == null ? 0 : mTypeface.hashCode());
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Build;
+
+/**
+ * 圆环静态图层的共享缓存。
+ * <p>
+ * 静态图层只包含中心圆，它不随百分比值改变。相同半径、相同颜色的中心圆共用一张预先绘制好的Bitmap，
+ * 每帧只需绘制这张Bitmap，百分比圆弧、剩余的灰色轨道和文字仍然直接绘制，与不使用缓存时的绘制结果一致。
+ * 缓存按最近最少使用的顺序淘汰，占用的内存不超过设定的上限，并在系统内存紧张时释放。只能在UI线程中使用。
+ */
+public final class LemonLayerCache {
+
+	/** 默认内存上限，单位字节 */
+	public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+	private static LemonLayerCache sInstance;
+
+	private final LinkedHashMap<LayerKey, Bitmap> mLayers = new LinkedHashMap<LayerKey, Bitmap>(
+			16, 0.75f, true);
+
+	/** 查找时复用的键，避免每帧分配对象 */
+	private final LayerKey mProbeKey = new LayerKey();
+
+	private final Paint mHeartPaint;
+
+	private int mMaxBytes;
+	private int mSize;
+	private long mHitCount;
+	private long mMissCount;
+	private long mEvictionCount;
+
+	private LemonLayerCache(int maxBytes) {
+		mMaxBytes = maxBytes;
+		mHeartPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		mHeartPaint.setStyle(Paint.Style.FILL);
+	}
+
+	/**
+	 * 返回进程内共享的缓存，第一次调用时注册内存回调。只能在UI线程中调用。
+	 */
+	@SuppressLint("NewApi")
+	public static LemonLayerCache getInstance(Context context) {
+		if (sInstance == null) {
+			int maxBytes = (int) Math.min(DEFAULT_MAX_BYTES, Runtime
+					.getRuntime().maxMemory() / 32);
+			sInstance = new LemonLayerCache(maxBytes);
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+				context.getApplicationContext().registerComponentCallbacks(
+						new ComponentCallbacks2() {
+
+							@Override
+							public void onTrimMemory(int level) {
+								sInstance.trimMemory(level);
+							}
+
+							@Override
+							public void onLowMemory() {
+								sInstance.evictAll();
+							}
+
+							@Override
+							public void onConfigurationChanged(
+									Configuration newConfig) {
+							}
+						});
+			}
+		}
+		return sInstance;
+	}
+
+	/**
+	 * 返回给定样式的静态图层，缓存中没有时绘制并放入缓存。图层尺寸超过内存上限时返回null，由调用者直接绘制。
+	 *
+	 * @param heartRadius
+	 *            中心圆半径
+	 * @param heartColor
+	 *            中心圆颜色
+	 * @return 静态图层，图层中心即圆心，宽高相等且为偶数
+	 */
+	Bitmap get(int heartRadius, int heartColor) {
+		LayerKey key = mProbeKey;
+		key.set(heartRadius, heartColor);
+		Bitmap layer = mLayers.get(key);
+		if (layer != null) {
+			mHitCount++;
+			return layer;
+		}
+		mMissCount++;
+
+		int size = 2 * heartRadius + 2;
+		int byteCount = size * size * 4;
+		if (size <= 0 || byteCount > mMaxBytes) {
+			return null;
+		}
+		layer = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+		Canvas canvas = new Canvas(layer);
+		float center = size / 2;
+		mHeartPaint.setColor(heartColor);
+		canvas.drawCircle(center, center, heartRadius, mHeartPaint);
+
+		LayerKey storedKey = new LayerKey();
+		storedKey.set(heartRadius, heartColor);
+		mLayers.put(storedKey, layer);
+		mSize += byteCount;
+		trimToSize(mMaxBytes);
+		return layer;
+	}
+
+	/**
+	 * 设置内存上限，超出的部分立即淘汰。
+	 *
+	 * @param maxBytes
+	 *            内存上限，单位字节
+	 * @throws IllegalArgumentException
+	 *             如果内存上限小于0
+	 */
+	public void setMaxBytes(int maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("内存上限不能小于0");
+		}
+		mMaxBytes = maxBytes;
+		trimToSize(maxBytes);
+	}
+
+	public int getMaxBytes() {
+		return mMaxBytes;
+	}
+
+	/**
+	 * 返回缓存的图层当前占用的字节数。
+	 */
+	public int getSize() {
+		return mSize;
+	}
+
+	public long getHitCount() {
+		return mHitCount;
+	}
+
+	public long getMissCount() {
+		return mMissCount;
+	}
+
+	public long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	/**
+	 * 按照{@link ComponentCallbacks2#onTrimMemory(int)}的级别释放缓存。
+	 */
+	public void trimMemory(int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+				|| level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+			evictAll();
+		} else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			trimToSize(mMaxBytes / 2);
+		}
+	}
+
+	/**
+	 * 清空缓存。
+	 */
+	public void evictAll() {
+		trimToSize(0);
+	}
+
+	// 淘汰最久未使用的图层直到占用不超过maxBytes。被淘汰的Bitmap可能仍被显示列表引用，所以不调用recycle
+	private void trimToSize(int maxBytes) {
+		Iterator<Map.Entry<LayerKey, Bitmap>> it = mLayers.entrySet()
+				.iterator();
+		while (mSize > maxBytes && it.hasNext()) {
+			Bitmap layer = it.next().getValue();
+			it.remove();
+			mSize -= layer.getWidth() * layer.getHeight() * 4;
+			mEvictionCount++;
+		}
+	}
+
+	private static final class LayerKey {
+		int mHeartRadius;
+		int mHeartColor;
+
+		void set(int heartRadius, int heartColor) {
+			mHeartRadius = heartRadius;
+			mHeartColor = heartColor;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof LayerKey)) {
+				return false;
+			}
+			LayerKey other = (LayerKey) o;
+			return mHeartRadius == other.mHeartRadius
+					&& mHeartColor == other.mHeartColor;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * mHeartRadius + mHeartColor;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * 根据渲染模式管理View的layer类型。
+ * <p>
+ * 只有目标layer类型与当前类型不同时才调用{@link View#setLayerType(int, android.graphics.Paint)}，
+ * 并记录实际发生的切换次数。每次切换都会丢弃并重新分配离屏缓冲。
+ */
+final class LemonLayerController {
+	private final View mView;
+	private int mRenderMode;
+	private int mLayerType = -1;
+	private int mTransitionCount;
+
+	LemonLayerController(View view, int renderMode) {
+		mView = view;
+		mRenderMode = renderMode;
+	}
+
+	void setRenderMode(int renderMode) {
+		mRenderMode = renderMode;
+	}
+
+	int getRenderMode() {
+		return mRenderMode;
+	}
+
+	/**
+	 * 返回最近一次按渲染模式确定的layer类型，尚未确定时为-1。
+	 */
+	int getLayerType() {
+		return mLayerType;
+	}
+
+	/**
+	 * 返回layer类型实际切换的次数。
+	 */
+	int getTransitionCount() {
+		return mTransitionCount;
+	}
+
+	/**
+	 * 按照当前渲染模式设置layer类型。
+	 *
+	 * @param needsSoftware
+	 *            当前画笔是否使用了此系统版本的硬件加速不支持的特性，只在自动模式下使用
+	 */
+	@SuppressLint("NewApi")
+	void apply(boolean needsSoftware) {
+		if (mView.isInEditMode()
+				|| Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+			return;
+		}
+		int layerType = resolveLayerType(needsSoftware);
+		if (layerType != mLayerType) {
+			if (mLayerType != -1 || layerType != mView.getLayerType()) {
+				mView.setLayerType(layerType, null);
+				mTransitionCount++;
+			}
+			mLayerType = layerType;
+		}
+	}
+
+	private int resolveLayerType(boolean needsSoftware) {
+		switch (mRenderMode) {
+		case PercentLemon.RENDER_MODE_HARDWARE:
+			return View.LAYER_TYPE_NONE;
+		case PercentLemon.RENDER_MODE_HARDWARE_LAYER:
+			return View.LAYER_TYPE_HARDWARE;
+		case PercentLemon.RENDER_MODE_SOFTWARE:
+			return View.LAYER_TYPE_SOFTWARE;
+		default:
+			return needsSoftware ? View.LAYER_TYPE_SOFTWARE
+					: View.LAYER_TYPE_NONE;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+/**
+ * 单个{@link PercentLemon}的渲染统计数据。
+ * <p>
+ * 通过{@link PercentLemon#setRenderStatsEnabled(boolean)}开启后由PercentLemon在UI线程中实时更新，
+ * 更新过程不分配对象。统计关闭时PercentLemon不持有此对象，只多一次空引用判断。
+ */
+public final class LemonRenderStats {
+
+	/** 计算期望动画帧数时假定的屏幕刷新率 */
+	private static final int ASSUMED_REFRESH_RATE = 60;
+
+	long mDrawCount;
+	long mDrawNanos;
+	long mMaxDrawNanos;
+	long mInvalidateCount;
+	long mInvalidatedPixelCount;
+	long mMeasureCount;
+	long mMeasureMemoHitCount;
+	long mAnimationFrameCount;
+	long mAnimationMillis;
+	long mReplayedDrawCount;
+	long mReplayedPartCount;
+	int mLayerTransitionCount;
+
+	LemonRenderStats() {
+	}
+
+	void recordDraw(long nanos) {
+		mDrawCount++;
+		mDrawNanos += nanos;
+		if (nanos > mMaxDrawNanos) {
+			mMaxDrawNanos = nanos;
+		}
+	}
+
+	void recordInvalidate(long pixelCount) {
+		mInvalidateCount++;
+		mInvalidatedPixelCount += pixelCount;
+	}
+
+	/**
+	 * 返回onDraw的调用次数。
+	 */
+	public long getDrawCount() {
+		return mDrawCount;
+	}
+
+	/**
+	 * 返回onDraw累计耗时，单位纳秒。
+	 */
+	public long getDrawNanos() {
+		return mDrawNanos;
+	}
+
+	/**
+	 * 返回单次onDraw的最长耗时，单位纳秒。
+	 */
+	public long getMaxDrawNanos() {
+		return mMaxDrawNanos;
+	}
+
+	/**
+	 * 返回因属性变化而标记重绘的次数。
+	 */
+	public long getInvalidateCount() {
+		return mInvalidateCount;
+	}
+
+	/**
+	 * 返回因属性变化而标记为需要重绘的像素总数。
+	 */
+	public long getInvalidatedPixelCount() {
+		return mInvalidatedPixelCount;
+	}
+
+	/**
+	 * 返回onMeasure的调用次数。
+	 */
+	public long getMeasureCount() {
+		return mMeasureCount;
+	}
+
+	/**
+	 * 返回onMeasure中直接使用上一次测量结果的次数。
+	 */
+	public long getMeasureMemoHitCount() {
+		return mMeasureMemoHitCount;
+	}
+
+	/**
+	 * 返回开启绘制录制后，完全由回放录制得到的onDraw次数。
+	 */
+	public long getReplayedDrawCount() {
+		return mReplayedDrawCount;
+	}
+
+	/**
+	 * 返回开启绘制录制后，由回放录制得到的中心圆部分和圆环部分的次数之和，包括只回放了其中一部分的onDraw。
+	 */
+	public long getReplayedPartCount() {
+		return mReplayedPartCount;
+	}
+
+	/**
+	 * 返回百分比动画实际收到的帧数。
+	 */
+	public long getAnimationFrameCount() {
+		return mAnimationFrameCount;
+	}
+
+	/**
+	 * 返回百分比动画（包括中途取消的动画，恢复的动画只计恢复后播放的部分）在60Hz刷新率下应当收到的帧数，与{@link #getAnimationFrameCount()}比较可以得知丢帧情况。
+	 */
+	public long getExpectedAnimationFrameCount() {
+		return mAnimationMillis * ASSUMED_REFRESH_RATE / 1000;
+	}
+
+	/**
+	 * 返回layer类型实际切换的次数。
+	 */
+	public int getLayerTransitionCount() {
+		return mLayerTransitionCount;
+	}
+
+	/**
+	 * 将所有统计数据清零。
+	 */
+	public void reset() {
+		mDrawCount = 0;
+		mDrawNanos = 0;
+		mMaxDrawNanos = 0;
+		mInvalidateCount = 0;
+		mInvalidatedPixelCount = 0;
+		mMeasureCount = 0;
+		mMeasureMemoHitCount = 0;
+		mAnimationFrameCount = 0;
+		mAnimationMillis = 0;
+		mReplayedDrawCount = 0;
+		mReplayedPartCount = 0;
+		mLayerTransitionCount = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "LemonRenderStats{draws=" + mDrawCount + ", drawNanos="
+				+ mDrawNanos + ", maxDrawNanos=" + mMaxDrawNanos
+				+ ", invalidates=" + mInvalidateCount + ", invalidatedPixels="
+				+ mInvalidatedPixelCount + ", measures=" + mMeasureCount
+				+ ", measureMemoHits=" + mMeasureMemoHitCount
+				+ ", replayedDraws=" + mReplayedDrawCount
+				+ ", replayedParts=" + mReplayedPartCount
+				+ ", animationFrames=" + mAnimationFrameCount + "/"
+				+ getExpectedAnimationFrameCount() + ", layerTransitions="
+				+ mLayerTransitionCount + "}";
+	}
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.SweepGradient;
+import android.os.Build;
+import cn.changwentao.widget.core.ColorGradientTable;
+import cn.changwentao.widget.core.PercentLabels;
+
+/**
+ * 百分比圆环的绘制逻辑，持有画笔、颜色查找表和文本排版缓存。
+ * <p>
+ * {@link PercentLemon}、{@link PercentLemonGrid}和{@link PercentLemonDrawable}共用这一套绘制代码，
+ * 一个LemonRenderer可以依次绘制任意多个相同样式、相同尺寸的圆环。
+ */
+final class LemonRenderer {
+
+	/** 默认的外圆环颜色，百分比值之外的正常情况下圆环颜色 */
+	static final int DEFAULT_SKIN_INVALID_COLOR = 0xFFCCCCCC;
+
+	/** 硬件加速开始支持文本以外图形阴影的系统版本，即Android 9 */
+	private static final int SDK_SHAPE_SHADOW = 28;
+
+	/** 扫描渐变的颜色节点数量，节点之间由着色器线性插值 */
+	private static final int SWEEP_GRADIENT_STOPS = 9;
+
+	/** 百分比文本排版缓存 */
+	private final LemonTextLayout mTextLayout;
+
+	/** 中心圆画笔，第一次绘制时创建，只创建不绘制的圆环不持有画笔 */
+	private Paint mHeartPaint;
+
+	/** 外围圆环画笔，第一次绘制时创建 */
+	private Paint mSkinPaint;
+
+	/** 外围圆环颜色查找表 */
+	private final ColorGradientTable mSkinColorTable;
+
+	/** 中心圆点击颜色查找表，第一次点击时创建，大多数圆环从不被点击 */
+	private ColorGradientTable mHeartColorTable;
+	private int mHeartClickedColor;
+	private int mColorTableResolution = ColorGradientTable.DEFAULT_RESOLUTION;
+	private int mColorInterpolation = ColorGradientTable.INTERPOLATION_RGB;
+
+	private int mTextColor;
+
+	/** 整体透明度，绘制时与各颜色自身的透明度相乘 */
+	private int mAlpha = 255;
+
+	/** 中心圆的正常颜色，只有中心圆为此颜色时才使用静态图层缓存 */
+	private int mHeartColor;
+	private int mSkinRawDepth;
+	private ColorFilter mColorFilter;
+
+	/** 中心圆和外围圆环的阴影，半径为0时不绘制阴影 */
+	private float mShadowRadius;
+	private float mShadowDx;
+	private float mShadowDy;
+	private int mShadowColor;
+
+	/** 静态图层缓存，为null时不使用缓存 */
+	private LemonLayerCache mLayerCache;
+	private Paint mLayerPaint;
+
+	/**
+	 * 扫描渐变着色器，圆心位于原点，起点旋转到顶部。绘制时平移画布而不是重建着色器，因此只在颜色改变时重建，
+	 * 不同位置、不同尺寸的圆环也可以共用。为null时外围圆环使用纯色。
+	 */
+	private Shader mSweepGradient;
+	private boolean mSweepGradientEnabled;
+	private boolean mSweepGradientDirty;
+	private int[] mSweepColors;
+	private float[] mSweepPositions;
+	private Matrix mSweepMatrix;
+
+	/** 平移到原点后的外围圆环矩形 */
+	private final RectF mSweepBounds = new RectF();
+
+	/** 样式版本号，任何影响绘制结果的设置改变时递增，供{@link LemonDrawRecording}判断录制是否失效 */
+	private int mGeneration;
+
+	/**
+	 * @param cacheLabelWidths
+	 *            是否缓存所有文本的宽度，绘制多个不同数值的圆环时使用
+	 */
+	LemonRenderer(int textColor, int heartColor, int heartClickedColor,
+			int skinStartColor, int skinEndColor, boolean cacheLabelWidths) {
+		mTextColor = textColor;
+		mHeartColor = heartColor;
+		mTextLayout = new LemonTextLayout(textColor, cacheLabelWidths);
+		mSkinColorTable = new ColorGradientTable(skinStartColor, skinEndColor);
+		mHeartClickedColor = heartClickedColor;
+	}
+
+	LemonTextLayout getTextLayout() {
+		return mTextLayout;
+	}
+
+	/**
+	 * 设置中心文本是否使用共享的字形图集。
+	 */
+	void setGlyphAtlasEnabled(boolean enabled) {
+		mTextLayout.setGlyphAtlasEnabled(enabled);
+		mGeneration++;
+	}
+
+	/**
+	 * 返回样式版本号，绘制结果只取决于此版本号和传给绘制方法的参数。
+	 */
+	int getGeneration() {
+		return mGeneration;
+	}
+
+	void setTextColor(int color) {
+		mTextColor = color;
+		mTextLayout.setColor(applyAlpha(color));
+		mGeneration++;
+	}
+
+	int getTextColor() {
+		return mTextColor;
+	}
+
+	/**
+	 * 设置整体透明度，0为完全透明，255为不透明。
+	 */
+	void setAlpha(int alpha) {
+		mAlpha = alpha;
+		mTextLayout.setColor(applyAlpha(mTextColor));
+		applyShadowLayer(mHeartPaint);
+		applyShadowLayer(mSkinPaint);
+		mGeneration++;
+		mSweepGradientDirty = true;
+	}
+
+	int getAlpha() {
+		return mAlpha;
+	}
+
+	/**
+	 * 为所有画笔设置颜色过滤器。
+	 */
+	void setColorFilter(ColorFilter colorFilter) {
+		mColorFilter = colorFilter;
+		if (mHeartPaint != null) {
+			mHeartPaint.setColorFilter(colorFilter);
+		}
+		if (mSkinPaint != null) {
+			mSkinPaint.setColorFilter(colorFilter);
+		}
+		mTextLayout.setColorFilter(colorFilter);
+		mGeneration++;
+	}
+
+	/**
+	 * 为中心圆和外围圆环设置阴影，半径为0时清除阴影。
+	 */
+	void setShadowLayer(float radius, float dx, float dy, int shadowColor) {
+		mShadowRadius = radius;
+		mShadowDx = dx;
+		mShadowDy = dy;
+		mShadowColor = shadowColor;
+		applyShadowLayer(mHeartPaint);
+		applyShadowLayer(mSkinPaint);
+		mGeneration++;
+	}
+
+	boolean hasShadowLayer() {
+		return mShadowRadius > 0;
+	}
+
+	/**
+	 * 返回阴影超出图形边缘的最大像素距离，没有阴影时为0。
+	 */
+	int getShadowExtent() {
+		if (mShadowRadius <= 0) {
+			return 0;
+		}
+		return (int) Math.ceil(mShadowRadius
+				+ Math.max(Math.abs(mShadowDx), Math.abs(mShadowDy)));
+	}
+
+	/**
+	 * 判断当前画笔使用的特性在此系统版本上是否需要软件绘制。扫描渐变着色器、颜色过滤器、抗锯齿圆弧和字形图集的
+	 * ALPHA_8位图在所有支持硬件加速的版本上都可以硬件绘制；文本以外图形的阴影直到Android 9才支持硬件绘制。
+	 */
+	boolean requiresSoftwareLayer() {
+		return hasShadowLayer() && Build.VERSION.SDK_INT < SDK_SHAPE_SHADOW;
+	}
+
+	private void applyShadowLayer(Paint paint) {
+		if (paint == null) {
+			return;
+		}
+		if (mShadowRadius > 0) {
+			paint.setShadowLayer(mShadowRadius, mShadowDx, mShadowDy,
+					applyAlpha(mShadowColor));
+		} else {
+			paint.clearShadowLayer();
+		}
+	}
+
+	private int applyAlpha(int color) {
+		if (mAlpha == 255) {
+			return color;
+		}
+		int alpha = (color >>> 24) * mAlpha / 255;
+		return (color & 0x00FFFFFF) | (alpha << 24);
+	}
+
+	void setHeartColors(int heartColor, int heartClickedColor) {
+		mHeartColor = heartColor;
+		mHeartClickedColor = heartClickedColor;
+		if (mHeartColorTable != null) {
+			mHeartColorTable.setColors(heartColor, heartClickedColor);
+		}
+		mGeneration++;
+	}
+
+	/**
+	 * 返回中心圆由正常颜色渐变到点击颜色经历给定百分比时的颜色。
+	 */
+	int getHeartColor(float clickPercent) {
+		if (mHeartColorTable == null) {
+			if (Float.compare(clickPercent, 0) <= 0) {
+				return mHeartColor;
+			}
+			mHeartColorTable = new ColorGradientTable(mHeartColor,
+					mHeartClickedColor);
+			mHeartColorTable.setResolution(mColorTableResolution);
+			mHeartColorTable.setInterpolation(mColorInterpolation);
+		}
+		return mHeartColorTable.getColor(clickPercent);
+	}
+
+	void setSkinColors(int startColor, int endColor) {
+		mSkinColorTable.setColors(startColor, endColor);
+		mGeneration++;
+		mSweepGradientDirty = true;
+	}
+
+	void setColorTableResolution(int resolution) {
+		mSkinColorTable.setResolution(resolution);
+		mColorTableResolution = resolution;
+		if (mHeartColorTable != null) {
+			mHeartColorTable.setResolution(resolution);
+		}
+		mGeneration++;
+		mSweepGradientDirty = true;
+	}
+
+	void setColorInterpolation(int interpolation) {
+		mSkinColorTable.setInterpolation(interpolation);
+		mColorInterpolation = interpolation;
+		if (mHeartColorTable != null) {
+			mHeartColorTable.setInterpolation(interpolation);
+		}
+		mGeneration++;
+		mSweepGradientDirty = true;
+	}
+
+	/**
+	 * 设置外围圆环是否沿圆弧使用由起始颜色到结束颜色的扫描渐变，否则整段圆弧使用当前百分比对应的纯色。
+	 */
+	void setSweepGradientEnabled(boolean enabled) {
+		mSweepGradientEnabled = enabled;
+		mGeneration++;
+		if (enabled && mSweepColors == null) {
+			mSweepColors = new int[SWEEP_GRADIENT_STOPS];
+			mSweepPositions = new float[SWEEP_GRADIENT_STOPS];
+			for (int i = 0; i < SWEEP_GRADIENT_STOPS; i++) {
+				mSweepPositions[i] = (float) i / (SWEEP_GRADIENT_STOPS - 1);
+			}
+			mSweepMatrix = new Matrix();
+			mSweepMatrix.setRotate(-90, 0, 0);
+			mSweepGradientDirty = true;
+		}
+	}
+
+	boolean isSweepGradientEnabled() {
+		return mSweepGradientEnabled;
+	}
+
+	// 颜色改变后重建扫描渐变，节点颜色取自颜色查找表，因此与纯色模式使用相同的插值方式
+	private Shader getSweepGradient() {
+		if (mSweepGradientDirty || mSweepGradient == null) {
+			for (int i = 0; i < SWEEP_GRADIENT_STOPS; i++) {
+				mSweepColors[i] = applyAlpha(mSkinColorTable
+						.getColor(mSweepPositions[i] * 100));
+			}
+			mSweepGradient = new SweepGradient(0, 0, mSweepColors,
+					mSweepPositions);
+			mSweepGradient.setLocalMatrix(mSweepMatrix);
+			mSweepGradientDirty = false;
+		}
+		return mSweepGradient;
+	}
+
+	/**
+	 * 设置外围圆环的像素宽度，尺寸改变时调用。
+	 */
+	void setSkinRawDepth(int skinRawDepth) {
+		mSkinRawDepth = skinRawDepth;
+		if (mSkinPaint != null) {
+			mSkinPaint.setStrokeWidth(skinRawDepth);
+		}
+		mGeneration++;
+	}
+
+	/**
+	 * 设置静态图层缓存，中心圆将从缓存的Bitmap绘制。传入null则每帧直接绘制。
+	 */
+	void setLayerCache(LemonLayerCache layerCache) {
+		mLayerCache = layerCache;
+		mGeneration++;
+		if (layerCache != null && mLayerPaint == null) {
+			mLayerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+		}
+	}
+
+	boolean isLayerCacheEnabled() {
+		return mLayerCache != null;
+	}
+
+	/**
+	 * 绘制一个圆环。
+	 *
+	 * @param xCenter
+	 *            圆心横坐标
+	 * @param yCenter
+	 *            圆心纵坐标
+	 * @param heartRadius
+	 *            中心圆半径
+	 * @param bounds
+	 *            外围圆环所在的矩形，即圆环线条中心所在的圆的外接矩形
+	 * @param percent
+	 *            百分比值
+	 * @param heartColor
+	 *            中心圆颜色
+	 */
+	void draw(Canvas canvas, float xCenter, float yCenter, int heartRadius,
+			RectF bounds, float percent, int heartColor) {
+		drawHeart(canvas, xCenter, yCenter, heartRadius, heartColor);
+		if (Float.compare(percent, 0) >= 0) {
+			drawRing(canvas, xCenter, yCenter, heartRadius, bounds, percent);
+		}
+	}
+
+	/**
+	 * 绘制百分比圆弧、灰色轨道和中心文本，即{@link #draw}中除中心圆以外的部分。
+	 */
+	void drawRing(Canvas canvas, float xCenter, float yCenter,
+			int heartRadius, RectF bounds, float percent) {
+		float radianAngle = (percent / 100) * 360;
+		if (mSweepGradientEnabled) {
+			drawSweepArc(canvas, xCenter, yCenter, bounds, radianAngle);
+		} else {
+			Paint skinPaint = getSkinPaint();
+			skinPaint.setColor(applyAlpha(mSkinColorTable.getColor(percent)));
+			canvas.drawArc(bounds, -90, radianAngle, false, skinPaint);
+		}
+		drawTrack(canvas, bounds, -90 + radianAngle);
+		drawLabel(canvas, xCenter, yCenter, heartRadius, percent);
+	}
+
+	/**
+	 * 绘制一个由多段圆弧首尾相接组成的圆环，剩余部分绘制为灰色轨道，中心文本显示各段之和。
+	 *
+	 * @param sweeps
+	 *            各段圆弧的角度
+	 * @param colors
+	 *            各段圆弧的颜色
+	 * @param count
+	 *            段数
+	 * @param percent
+	 *            各段百分比值之和
+	 */
+	void drawSegments(Canvas canvas, float xCenter, float yCenter,
+			int heartRadius, RectF bounds, float[] sweeps, int[] colors,
+			int count, float percent, int heartColor) {
+		drawHeart(canvas, xCenter, yCenter, heartRadius, heartColor);
+		drawSegmentRing(canvas, xCenter, yCenter, heartRadius, bounds, sweeps,
+				colors, count, percent);
+	}
+
+	/**
+	 * 绘制各段圆弧、灰色轨道和中心文本，即{@link #drawSegments}中除中心圆以外的部分。
+	 */
+	void drawSegmentRing(Canvas canvas, float xCenter, float yCenter,
+			int heartRadius, RectF bounds, float[] sweeps, int[] colors,
+			int count, float percent) {
+		Paint skinPaint = getSkinPaint();
+		float startAngle = -90;
+		for (int i = 0; i < count; i++) {
+			float sweep = sweeps[i];
+			if (sweep > 0) {
+				skinPaint.setColor(applyAlpha(colors[i]));
+				canvas.drawArc(bounds, startAngle, sweep, false, skinPaint);
+				startAngle += sweep;
+			}
+		}
+		// 各段角度之和已截断到360度，累加时的舍入误差仍可能使起始角度略超过270度
+		if (startAngle < 270) {
+			drawTrack(canvas, bounds, startAngle);
+		}
+		drawLabel(canvas, xCenter, yCenter, heartRadius, percent);
+	}
+
+	// 以扫描渐变绘制百分比圆弧，画笔颜色设为不透明黑色，使透明度完全由渐变颜色决定
+	private void drawSweepArc(Canvas canvas, float xCenter, float yCenter,
+			RectF bounds, float sweep) {
+		RectF sweepBounds = mSweepBounds;
+		sweepBounds.set(bounds);
+		sweepBounds.offset(-xCenter, -yCenter);
+		Paint skinPaint = getSkinPaint();
+		skinPaint.setColor(0xFF000000);
+		skinPaint.setShader(getSweepGradient());
+		int saveCount = canvas.save();
+		canvas.translate(xCenter, yCenter);
+		canvas.drawArc(sweepBounds, -90, sweep, false, skinPaint);
+		canvas.restoreToCount(saveCount);
+		skinPaint.setShader(null);
+	}
+
+	/**
+	 * 绘制中心圆，可以使用静态图层时从缓存的Bitmap绘制。
+	 */
+	void drawHeart(Canvas canvas, float xCenter, float yCenter,
+			int heartRadius, int heartColor) {
+		Bitmap layer = null;
+		if (mLayerCache != null && heartColor == mHeartColor
+				&& mColorFilter == null && !hasShadowLayer()) {
+			layer = mLayerCache.get(heartRadius, applyAlpha(heartColor));
+		}
+		if (layer != null) {
+			float half = layer.getWidth() / 2;
+			canvas.drawBitmap(layer, xCenter - half, yCenter - half,
+					mLayerPaint);
+			return;
+		}
+		if (mHeartPaint == null) {
+			mHeartPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+			mHeartPaint.setStyle(Paint.Style.FILL);
+			mHeartPaint.setColorFilter(mColorFilter);
+			applyShadowLayer(mHeartPaint);
+		}
+		mHeartPaint.setColor(applyAlpha(heartColor));
+		canvas.drawCircle(xCenter, yCenter, heartRadius, mHeartPaint);
+	}
+
+	// 从给定角度到圆环起点绘制灰色轨道
+	private void drawTrack(Canvas canvas, RectF bounds, float startAngle) {
+		Paint skinPaint = getSkinPaint();
+		skinPaint.setColor(applyAlpha(DEFAULT_SKIN_INVALID_COLOR));
+		canvas.drawArc(bounds, startAngle, 270 - startAngle, false, skinPaint);
+	}
+
+	private Paint getSkinPaint() {
+		if (mSkinPaint == null) {
+			mSkinPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+			mSkinPaint.setStyle(Paint.Style.STROKE);
+			mSkinPaint.setStrokeWidth(mSkinRawDepth);
+			mSkinPaint.setColorFilter(mColorFilter);
+			applyShadowLayer(mSkinPaint);
+		}
+		return mSkinPaint;
+	}
+
+	private void drawLabel(Canvas canvas, float xCenter, float yCenter,
+			int heartRadius, float percent) {
+		mTextLayout.setHeartRadius(heartRadius);
+		mTextLayout.setLabel(PercentLabels.indexOf(percent));
+		mTextLayout.draw(canvas, xCenter, yCenter);
+	}
+}
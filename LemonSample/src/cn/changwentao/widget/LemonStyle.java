@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+import cn.changwentao.lemon.R;
+
+/**
+ * 百分比圆环的样式，即graph_attrs.xml中PercentLemon的全部属性值，创建后不可修改，可以在任意线程中使用。
+ * <p>
+ * 样式可以由{@link #fromAttributes(Context, AttributeSet)}从xml属性解析，也可以由{@link Builder}构建。
+ * {@link PercentLemon}和{@link PercentLemonGrid}以此解析xml属性，{@link LemonBitmapRenderer}以此在View之外绘制圆环。
+ * <p>
+ * {@link #obtain(Context, AttributeSet)}返回共享的样式：以主题、style属性和xml中PercentLemon属性的原始值为键缓存解析结果，
+ * 同一布局中属性相同的大量圆环只调用一次obtainStyledAttributes。主题被回收后对应的缓存随之释放。
+ * 资源的配置改变时，例如切换夜间模式、语言或屏幕方向而Activity没有重建，该主题的缓存被丢弃，
+ * 按限定符选择的颜色等资源重新解析。缓存假定主题创建后不再修改，调用{@link Resources.Theme#applyStyle(int, boolean)}修改了主题时应先调用{@link #clearCache()}。
+ */
+public final class LemonStyle {
+
+	/** 与{@link PercentLemon}默认样式相同的样式 */
+	public static final LemonStyle DEFAULT = new Builder().build();
+
+	/** 每个主题最多缓存的样式数量，超出时清空该主题的缓存 */
+	private static final int MAX_STYLES_PER_THEME = 64;
+
+	private static final WeakHashMap<Resources.Theme, ThemeStyles> sCache = new WeakHashMap<Resources.Theme, ThemeStyles>();
+
+	private final int mTextColor;
+	private final int mHeartColor;
+	private final int mHeartClickedColor;
+	private final int mSkinStartColor;
+	private final int mSkinEndColor;
+	private final int mSkinDepth;
+	private final float mPercent;
+	private final long mAnimationDuration;
+	private final int mRenderMode;
+	private final int mTextMode;
+	private final int mSkinMode;
+	private final int mRestoreMode;
+
+	private LemonStyle(Builder builder) {
+		mTextColor = builder.mTextColor;
+		mHeartColor = builder.mHeartColor;
+		mHeartClickedColor = builder.mHeartClickedColor;
+		mSkinStartColor = builder.mSkinStartColor;
+		mSkinEndColor = builder.mSkinEndColor;
+		mSkinDepth = builder.mSkinDepth;
+		mPercent = builder.mPercent;
+		mAnimationDuration = builder.mAnimationDuration;
+		mRenderMode = builder.mRenderMode;
+		mTextMode = builder.mTextMode;
+		mSkinMode = builder.mSkinMode;
+		mRestoreMode = builder.mRestoreMode;
+	}
+
+	/**
+	 * 返回共享的样式，相同主题、相同xml属性的样式只解析一次。可以在任意线程中调用。
+	 * 
+	 * @param context
+	 *            Context上下文对象
+	 * @param attrs
+	 *            xml属性，可以为null
+	 * @throws IllegalArgumentException
+	 *             如果百分比值不在0到100之间
+	 * @see #fromAttributes(Context, AttributeSet)
+	 */
+	public static LemonStyle obtain(Context context, AttributeSet attrs) {
+		Resources.Theme theme = context.getTheme();
+		Configuration configuration = context.getResources()
+				.getConfiguration();
+		StyleKey key = StyleKey.of(attrs);
+		synchronized (sCache) {
+			ThemeStyles styles = sCache.get(theme);
+			if (styles != null
+					&& styles.mConfiguration.equals(configuration)) {
+				LemonStyle style = styles.mStyles.get(key);
+				if (style != null) {
+					return style;
+				}
+			}
+		}
+		// Resources在配置改变时原地修改Configuration对象，因此在解析之前复制一份作为缓存的配置
+		Configuration parsedConfiguration = new Configuration(configuration);
+		// 解析在锁外进行，并发解析同一样式时结果相同，后放入的覆盖先放入的
+		LemonStyle style = fromAttributes(context, attrs);
+		synchronized (sCache) {
+			ThemeStyles styles = sCache.get(theme);
+			if (styles == null) {
+				styles = new ThemeStyles(parsedConfiguration);
+				sCache.put(theme, styles);
+			} else if (!styles.mConfiguration.equals(parsedConfiguration)) {
+				styles.mConfiguration = parsedConfiguration;
+				styles.mStyles.clear();
+			} else if (styles.mStyles.size() >= MAX_STYLES_PER_THEME) {
+				styles.mStyles.clear();
+			}
+			styles.mStyles.put(key, style);
+		}
+		return style;
+	}
+
+	/**
+	 * 清空{@link #obtain(Context, AttributeSet)}使用的缓存。
+	 */
+	public static void clearCache() {
+		synchronized (sCache) {
+			sCache.clear();
+		}
+	}
+
+	/**
+	 * 从xml属性解析样式，每次调用都重新解析，没有设置的属性使用默认值。只设置了起始颜色和结束颜色之一时，外圆环使用单一颜色。
+	 * 
+	 * @param context
+	 *            Context上下文对象
+	 * @param attrs
+	 *            xml属性，可以为null
+	 * @throws IllegalArgumentException
+	 *             如果百分比值不在0到100之间
+	 */
+	public static LemonStyle fromAttributes(Context context,
+			AttributeSet attrs) {
+		Builder builder = new Builder();
+		TypedArray a = context.getTheme().obtainStyledAttributes(attrs,
+				R.styleable.PercentLemon, 0, 0);
+		try {
+			builder.mTextColor = a.getColor(
+					R.styleable.PercentLemon_centerTextColor,
+					PercentLemon.DEFAULT_TEXT_COLOR);
+			builder.mHeartColor = a.getColor(
+					R.styleable.PercentLemon_heartColor,
+					PercentLemon.DEFAULT_HEART_COLOR_NORMAL);
+			builder.mHeartClickedColor = a.getColor(
+					R.styleable.PercentLemon_heartClickedColor,
+					PercentLemon.DEFAULT_HEART_COLOR_CLICKED);
+			builder.mAnimationDuration = a.getInt(
+					R.styleable.PercentLemon_duration,
+					(int) PercentLemon.DEFAULT_ANIMATION_LENGTH);
+			if (!a.hasValue(R.styleable.PercentLemon_skinStartColor)
+					^ a.hasValue(R.styleable.PercentLemon_skinEndColor)) {
+				builder.mSkinStartColor = a.getColor(
+						R.styleable.PercentLemon_skinStartColor,
+						PercentLemon.DEFAULT_SKIN_START_COLOR);
+				builder.mSkinEndColor = a.getColor(
+						R.styleable.PercentLemon_skinEndColor,
+						PercentLemon.DEFAULT_SKIN_END_COLOR);
+			} else if (a.hasValue(R.styleable.PercentLemon_skinStartColor)) {
+				builder.mSkinEndColor = builder.mSkinStartColor = a.getColor(
+						R.styleable.PercentLemon_skinStartColor,
+						PercentLemon.DEFAULT_SKIN_START_COLOR);
+			} else {
+				builder.mSkinStartColor = builder.mSkinEndColor = a.getColor(
+						R.styleable.PercentLemon_skinEndColor,
+						PercentLemon.DEFAULT_SKIN_END_COLOR);
+			}
+			builder.mSkinDepth = a.getInt(R.styleable.PercentLemon_skinDepth,
+					PercentLemon.DEFAULT_SKIN_DEPTH);
+			builder.mRenderMode = a.getInt(
+					R.styleable.PercentLemon_renderMode,
+					PercentLemon.RENDER_MODE_AUTO);
+			builder.mTextMode = a.getInt(R.styleable.PercentLemon_textMode,
+					PercentLemon.TEXT_MODE_SHAPED);
+			builder.mSkinMode = a.getInt(R.styleable.PercentLemon_skinMode,
+					PercentLemon.SKIN_MODE_SOLID);
+			builder.mRestoreMode = a.getInt(
+					R.styleable.PercentLemon_restoreMode,
+					PercentLemon.RESTORE_MODE_JUMP);
+			builder.setPercent(a.getFloat(R.styleable.PercentLemon_percent, 0f));
+		} finally {
+			a.recycle();
+		}
+		return builder.build();
+	}
+
+	public int getTextColor() {
+		return mTextColor;
+	}
+
+	public int getHeartColor() {
+		return mHeartColor;
+	}
+
+	public int getHeartClickedColor() {
+		return mHeartClickedColor;
+	}
+
+	public int getSkinStartColor() {
+		return mSkinStartColor;
+	}
+
+	public int getSkinEndColor() {
+		return mSkinEndColor;
+	}
+
+	public int getSkinDepth() {
+		return mSkinDepth;
+	}
+
+	public float getPercent() {
+		return mPercent;
+	}
+
+	public long getAnimationDuration() {
+		return mAnimationDuration;
+	}
+
+	public int getRenderMode() {
+		return mRenderMode;
+	}
+
+	public int getTextMode() {
+		return mTextMode;
+	}
+
+	public int getSkinMode() {
+		return mSkinMode;
+	}
+
+	public int getRestoreMode() {
+		return mRestoreMode;
+	}
+
+	/**
+	 * 返回以此样式为初始值的{@link Builder}。
+	 */
+	public Builder buildUpon() {
+		Builder builder = new Builder();
+		builder.mTextColor = mTextColor;
+		builder.mHeartColor = mHeartColor;
+		builder.mHeartClickedColor = mHeartClickedColor;
+		builder.mSkinStartColor = mSkinStartColor;
+		builder.mSkinEndColor = mSkinEndColor;
+		builder.mSkinDepth = mSkinDepth;
+		builder.mPercent = mPercent;
+		builder.mAnimationDuration = mAnimationDuration;
+		builder.mRenderMode = mRenderMode;
+		builder.mTextMode = mTextMode;
+		builder.mSkinMode = mSkinMode;
+		builder.mRestoreMode = mRestoreMode;
+		return builder;
+	}
+
+	/**
+	 * 一个主题的样式缓存，以及解析这些样式时资源的配置。
+	 */
+	private static final class ThemeStyles {
+		Configuration mConfiguration;
+		final HashMap<StyleKey, LemonStyle> mStyles = new HashMap<StyleKey, LemonStyle>();
+
+		ThemeStyles(Configuration configuration) {
+			mConfiguration = configuration;
+		}
+	}
+
+	/**
+	 * 样式缓存的键：style属性和xml中属于PercentLemon的属性的资源id与原始值。View的id、布局参数等其他属性不参与比较。
+	 */
+	private static final class StyleKey {
+		private static final int[] NO_NAMES = new int[0];
+		private static final String[] NO_VALUES = new String[0];
+
+		private final int mStyle;
+		private final int[] mNames;
+		private final String[] mValues;
+		private final int mHashCode;
+
+		private StyleKey(int style, int[] names, String[] values) {
+			mStyle = style;
+			mNames = names;
+			mValues = values;
+			mHashCode = 31 * (31 * style + Arrays.hashCode(names))
+					+ Arrays.hashCode(values);
+		}
+
+		static StyleKey of(AttributeSet attrs) {
+			if (attrs == null) {
+				return new StyleKey(0, NO_NAMES, NO_VALUES);
+			}
+			int attributeCount = attrs.getAttributeCount();
+			int count = 0;
+			for (int i = 0; i < attributeCount; i++) {
+				if (isLemonAttribute(attrs.getAttributeNameResource(i))) {
+					count++;
+				}
+			}
+			int[] names = new int[count];
+			String[] values = new String[count];
+			int n = 0;
+			for (int i = 0; i < attributeCount; i++) {
+				int name = attrs.getAttributeNameResource(i);
+				if (isLemonAttribute(name)) {
+					names[n] = name;
+					values[n] = attrs.getAttributeValue(i);
+					n++;
+				}
+			}
+			return new StyleKey(attrs.getStyleAttribute(), names, values);
+		}
+
+		private static boolean isLemonAttribute(int name) {
+			for (int attr : R.styleable.PercentLemon) {
+				if (attr == name) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof StyleKey)) {
+				return false;
+			}
+			StyleKey other = (StyleKey) o;
+			return mStyle == other.mStyle
+					&& Arrays.equals(mNames, other.mNames)
+					&& Arrays.equals(mValues, other.mValues);
+		}
+
+		@Override
+		public int hashCode() {
+			return mHashCode;
+		}
+	}
+
+	/**
+	 * {@link LemonStyle}的构建器，初始值与{@link PercentLemon}的默认样式相同。
+	 */
+	public static final class Builder {
+		private int mTextColor = PercentLemon.DEFAULT_TEXT_COLOR;
+		private int mHeartColor = PercentLemon.DEFAULT_HEART_COLOR_NORMAL;
+		private int mHeartClickedColor = PercentLemon.DEFAULT_HEART_COLOR_CLICKED;
+		private int mSkinStartColor = PercentLemon.DEFAULT_SKIN_START_COLOR;
+		private int mSkinEndColor = PercentLemon.DEFAULT_SKIN_END_COLOR;
+		private int mSkinDepth = PercentLemon.DEFAULT_SKIN_DEPTH;
+		private float mPercent;
+		private long mAnimationDuration = PercentLemon.DEFAULT_ANIMATION_LENGTH;
+		private int mRenderMode = PercentLemon.RENDER_MODE_AUTO;
+		private int mTextMode = PercentLemon.TEXT_MODE_SHAPED;
+		private int mSkinMode = PercentLemon.SKIN_MODE_SOLID;
+		private int mRestoreMode = PercentLemon.RESTORE_MODE_JUMP;
+
+		public Builder setTextColor(int color) {
+			mTextColor = color;
+			return this;
+		}
+
+		public Builder setHeartColor(int heartColor) {
+			mHeartColor = heartColor;
+			return this;
+		}
+
+		public Builder setHeartClickedColor(int heartClickedColor) {
+			mHeartClickedColor = heartClickedColor;
+			return this;
+		}
+
+		public Builder setSkinColor(int startColor, int endColor) {
+			mSkinStartColor = startColor;
+			mSkinEndColor = endColor;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException
+		 *             如果传递的参数值不在1到50之间
+		 */
+		public Builder setSkinDepth(int skinDepth) {
+			if (skinDepth > 50 || skinDepth < 1) {
+				throw new IllegalArgumentException("宽度比重必须在1到50之间");
+			}
+			mSkinDepth = skinDepth;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException
+		 *             如果传递的参数值不在0到100之间
+		 */
+		public Builder setPercent(float percent) {
+			if (Float.compare(percent, 100.0f) > 0
+					|| Float.compare(percent, 0.0f) < 0) {
+				throw new IllegalArgumentException("百分比值必须在0到100之间");
+			}
+			mPercent = percent;
+			return this;
+		}
+
+		public Builder setAnimationDuration(long duration) {
+			mAnimationDuration = duration;
+			return this;
+		}
+
+		public Builder setRenderMode(int renderMode) {
+			mRenderMode = renderMode;
+			return this;
+		}
+
+		public Builder setTextMode(int textMode) {
+			mTextMode = textMode;
+			return this;
+		}
+
+		public Builder setSkinMode(int skinMode) {
+			mSkinMode = skinMode;
+			return this;
+		}
+
+		public Builder setRestoreMode(int restoreMode) {
+			mRestoreMode = restoreMode;
+			return this;
+		}
+
+		public LemonStyle build() {
+			return new LemonStyle(this);
+		}
+	}
+}
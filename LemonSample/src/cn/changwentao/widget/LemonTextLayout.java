@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import java.util.Arrays;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Paint.FontMetrics;
+import android.graphics.Rect;
+import android.text.TextPaint;
+import cn.changwentao.widget.core.PercentLabels;
+
+/**
+ * 中心百分比文本的排版缓存，以中心圆半径为键。
+ * <p>
+ * 数字与百分号各使用一个固定字号的{@link TextPaint}，在第一次排版时创建，字号、行高和百分号宽度只在半径变化时重新计算，
+ * 数字宽度只在显示的文本变化时重新测量。绘制多个不同数值的圆环时，可以缓存全部文本的宽度，
+ * 每个文本在同一半径下只测量一次。
+ * <p>
+ * 开启字形图集后，文本由{@link LemonGlyphAtlas}中预先光栅化的字形拼接而成，宽度也按图集中的字形步进计算。
+ * 图集被淘汰后改为直接绘制文本，直到半径改变时重新获取图集。
+ */
+final class LemonTextLayout {
+	/** 百分号文本 */
+	private static final String PERCENT_SIGN = "%";
+
+	/** 数字文本画笔，字号为中心圆半径的1/2，第一次排版时创建 */
+	private TextPaint mNumberPaint;
+
+	/** 百分号画笔，字号为中心圆半径的1/4，第一次排版时创建 */
+	private TextPaint mSignPaint;
+
+	private int mColor;
+	private ColorFilter mColorFilter;
+
+	private final FontMetrics mFontMetrics = new FontMetrics();
+
+	private int mHeartRadius = -1;
+	private float mLineHeight;
+	private float mAscent;
+	private float mDescent;
+	private float mSignWidth;
+
+	private int mLabelIndex = -1;
+	private float mLabelWidth;
+
+	/** 各文本宽度的缓存，未测量的条目为NaN，不缓存时为null */
+	private final float[] mLabelWidths;
+
+	private boolean mUseGlyphAtlas;
+
+	/** 当前半径下的字形图集，未开启、超出内存上限或已被淘汰时为null */
+	private LemonGlyphAtlas mGlyphAtlas;
+
+	/** 使用字形图集绘制时的画笔，颜色即文本颜色 */
+	private Paint mAtlasPaint;
+
+	LemonTextLayout(int color, boolean cacheLabelWidths) {
+		mLabelWidths = cacheLabelWidths ? new float[PercentLabels.COUNT]
+				: null;
+		mColor = color;
+	}
+
+	/**
+	 * 设置文本颜色。
+	 */
+	void setColor(int color) {
+		mColor = color;
+		if (mNumberPaint != null) {
+			mNumberPaint.setColor(color);
+			mSignPaint.setColor(color);
+		}
+		if (mAtlasPaint != null) {
+			mAtlasPaint.setColor(color);
+		}
+	}
+
+	/**
+	 * 返回文本颜色。
+	 */
+	int getColor() {
+		return mColor;
+	}
+
+	/**
+	 * 设置文本的颜色过滤器。
+	 */
+	void setColorFilter(ColorFilter colorFilter) {
+		mColorFilter = colorFilter;
+		if (mNumberPaint != null) {
+			mNumberPaint.setColorFilter(colorFilter);
+			mSignPaint.setColorFilter(colorFilter);
+		}
+		if (mAtlasPaint != null) {
+			mAtlasPaint.setColorFilter(colorFilter);
+		}
+	}
+
+	/**
+	 * 设置是否使用字形图集绘制文本，切换后下次设置半径时重新排版。
+	 */
+	void setGlyphAtlasEnabled(boolean enabled) {
+		if (enabled == mUseGlyphAtlas) {
+			return;
+		}
+		mUseGlyphAtlas = enabled;
+		if (enabled && mAtlasPaint == null) {
+			mAtlasPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+			mAtlasPaint.setColor(mColor);
+			mAtlasPaint.setColorFilter(mColorFilter);
+		}
+		mGlyphAtlas = null;
+		mHeartRadius = -1;
+		mLabelIndex = -1;
+	}
+
+	boolean isGlyphAtlasEnabled() {
+		return mUseGlyphAtlas;
+	}
+
+	/**
+	 * 设置中心圆半径，半径没有变化时不做任何计算。
+	 *
+	 * @param heartRadius
+	 *            中心圆半径
+	 */
+	void setHeartRadius(int heartRadius) {
+		if (heartRadius == mHeartRadius) {
+			return;
+		}
+		mHeartRadius = heartRadius;
+		if (mNumberPaint == null) {
+			mNumberPaint = createPaint();
+			mSignPaint = createPaint();
+		}
+		mNumberPaint.setTextSize(heartRadius / 2);
+		mSignPaint.setTextSize(heartRadius / 4);
+		mNumberPaint.getFontMetrics(mFontMetrics);
+		mAscent = mFontMetrics.ascent;
+		mDescent = mFontMetrics.descent;
+		mLineHeight = (int) Math.ceil(mDescent - mAscent);
+		mSignWidth = mSignPaint.measureText(PERCENT_SIGN, 0, 1);
+		if (mUseGlyphAtlas) {
+			mGlyphAtlas = LemonGlyphAtlas.obtain(heartRadius,
+					mNumberPaint.getTypeface());
+			if (mGlyphAtlas != null) {
+				mSignWidth = mGlyphAtlas.getSignAdvance();
+			}
+		}
+		mLabelIndex = -1;
+		if (mLabelWidths != null) {
+			Arrays.fill(mLabelWidths, Float.NaN);
+		}
+	}
+
+	private TextPaint createPaint() {
+		TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(mColor);
+		paint.setColorFilter(mColorFilter);
+		return paint;
+	}
+
+	/**
+	 * 设置要显示的文本，只有文本变化时才重新测量宽度。
+	 *
+	 * @param labelIndex
+	 *            {@link PercentLabels}中的文本下标
+	 */
+	void setLabel(int labelIndex) {
+		releaseEvictedAtlas();
+		if (labelIndex != mLabelIndex) {
+			mLabelIndex = labelIndex;
+			if (mLabelWidths == null) {
+				mLabelWidth = measureLabel(labelIndex);
+			} else {
+				float width = mLabelWidths[labelIndex];
+				if (Float.isNaN(width)) {
+					width = measureLabel(labelIndex);
+					mLabelWidths[labelIndex] = width;
+				}
+				mLabelWidth = width;
+			}
+		}
+	}
+
+	// 图集被淘汰后不再引用它，改为直接绘制文本，按文本画笔重新测量百分号和当前文本的宽度
+	private void releaseEvictedAtlas() {
+		if (mGlyphAtlas == null || !mGlyphAtlas.isEvicted()) {
+			return;
+		}
+		mGlyphAtlas = null;
+		mSignWidth = mSignPaint.measureText(PERCENT_SIGN, 0, 1);
+		if (mLabelWidths != null) {
+			Arrays.fill(mLabelWidths, Float.NaN);
+		}
+		int labelIndex = mLabelIndex;
+		if (labelIndex >= 0) {
+			mLabelIndex = -1;
+			setLabel(labelIndex);
+		}
+	}
+
+	private float measureLabel(int labelIndex) {
+		if (mGlyphAtlas != null) {
+			return mGlyphAtlas.measure(PercentLabels.getChars(),
+					PercentLabels.getStart(labelIndex),
+					PercentLabels.getLength(labelIndex));
+		}
+		return mNumberPaint.measureText(PercentLabels.getChars(),
+				PercentLabels.getStart(labelIndex),
+				PercentLabels.getLength(labelIndex));
+	}
+
+	/**
+	 * 计算以给定点为中心绘制当前文本时覆盖的像素区域。
+	 *
+	 * @return 如果尚未排版过文本返回false，此时outRect不会被修改
+	 */
+	boolean getBounds(float xCenter, float yCenter, Rect outRect) {
+		if (mLabelIndex < 0) {
+			return false;
+		}
+		float baseline = yCenter + mLineHeight / 4;
+		float halfWidth = (mLabelWidth + mSignWidth) / 2;
+		outRect.set((int) Math.floor(xCenter - halfWidth) - 1,
+				(int) Math.floor(baseline + mAscent) - 1,
+				(int) Math.ceil(xCenter + halfWidth) + 1,
+				(int) Math.ceil(baseline + mDescent) + 1);
+		return true;
+	}
+
+	/**
+	 * 以给定点为中心绘制当前文本。
+	 */
+	void draw(Canvas canvas, float xCenter, float yCenter) {
+		releaseEvictedAtlas();
+		float baseline = yCenter + mLineHeight / 4;
+		if (mGlyphAtlas != null) {
+			mGlyphAtlas.draw(canvas, PercentLabels.getChars(),
+					PercentLabels.getStart(mLabelIndex),
+					PercentLabels.getLength(mLabelIndex), xCenter
+							- (mLabelWidth + mSignWidth) / 2, baseline,
+					mAtlasPaint);
+			mGlyphAtlas.drawSign(canvas, xCenter - (mSignWidth - mLabelWidth)
+					/ 2, baseline, mAtlasPaint);
+			return;
+		}
+		canvas.drawText(PercentLabels.getChars(),
+				PercentLabels.getStart(mLabelIndex),
+				PercentLabels.getLength(mLabelIndex), xCenter
+						- (mLabelWidth + mSignWidth) / 2, baseline,
+				mNumberPaint);
+		canvas.drawText(PERCENT_SIGN, xCenter - (mSignWidth - mLabelWidth) / 2,
+				baseline, mSignPaint);
+	}
+}
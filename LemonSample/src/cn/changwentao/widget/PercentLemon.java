@@ -16,33 +16,43 @@
 
 package cn.changwentao.widget;
 
-import java.text.DecimalFormat;
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.Paint.FontMetrics;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.text.TextPaint;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
-import cn.changwentao.lemon.R;
+import cn.changwentao.widget.core.ColorGradientTable;
+import cn.changwentao.widget.core.LemonGeometry;
+import cn.changwentao.widget.core.LemonMeasure;
+import cn.changwentao.widget.core.LemonProgressStream;
+import cn.changwentao.widget.core.PublishedPercent;
 
 /**
  * PercentLemon类继承自{@link View}，以圆环图形的形式显示百分比数值。
  * <p>
  * 在设置百分比值时可以使用方法{@link #setPercent(float)}不包含动画效果，或者方法
  * {@link #animatToPercent(float)}包含过渡动画效果。
+ * <p>
+ * 测量结果只取决于测量规格和内边距，因此除内边距外的所有属性设置方法都不会请求重新布局：颜色、百分比值、
+ * 文本模式等只重绘受影响的区域，{@link #setSkinDepth(int)}在当前尺寸内重新计算圆环几何信息后重绘。
+ * 最近一次的测量结果会被保存，一次布局过程中以相同测量规格和内边距的重复测量直接使用保存的结果。
+ * <p>
+ * 相同主题、相同xml属性的PercentLemon共享同一个解析好的{@link LemonStyle}，不会重复调用obtainStyledAttributes；
+ * 只在点击时使用的中心圆颜色查找表在第一次点击时才创建。
+ * <p>
+ * 默认的渲染模式{@link #RENDER_MODE_AUTO}根据画笔使用的特性选择layer类型，例如在Android 9以下设置了
+ * {@link #setShadowLayer(float, float, float, int)}时使用软件layer，否则不使用离屏layer直接硬件加速绘制。
+ * <p>
+ * {@link #setDrawRecordingEnabled(boolean)}的绘制命令录制只在Android 6.0及以上的硬件画布上进行，
+ * 软件layer已经缓存了像素，软件绘制时不录制。
  * 
  * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_heartColor
  * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_heartClickedColor
@@ -52,65 +62,207 @@ import cn.changwentao.lemon.R;
  * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_percent
  * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_duration
  * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_centerTextColor
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_renderMode
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_textMode
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_restoreMode
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_skinMode
  */
 public class PercentLemon extends View {
-	private static final String TAG = "PercentLemon";
-	private static final boolean localLOG = false;
-
 	/** 默认的中心圆颜色 */
-	private static final int DEFAULT_HEART_COLOR_NORMAL = 0xFF373737;
+	static final int DEFAULT_HEART_COLOR_NORMAL = 0xFF373737;
 
 	/** 默认的中心圆点击颜色 */
-	private static final int DEFAULT_HEART_COLOR_CLICKED = 0XFF33B6EA;
+	static final int DEFAULT_HEART_COLOR_CLICKED = 0XFF33B6EA;
 
 	/** 默认的外圆环起始颜色（百分比为0） */
-	private static final int DEFAULT_SKIN_START_COLOR = 0xFFFF0000;
+	static final int DEFAULT_SKIN_START_COLOR = 0xFFFF0000;
 
 	/** 默认的外圆环结束颜色（百分比为100） */
-	private static final int DEFAULT_SKIN_END_COLOR = 0xFF00FF00;
+	static final int DEFAULT_SKIN_END_COLOR = 0xFF00FF00;
 
 	/** 默认的文本颜色（百分比为0） */
-	private static final int DEFAULT_TEXT_COLOR = 0xFFFFFFFF;
+	static final int DEFAULT_TEXT_COLOR = 0xFFFFFFFF;
 
 	/** 默认的外圆环宽度在整个半径中所占份额（共100份） */
-	private static final int DEFAULT_SKIN_DEPTH = 15;
-
-	/** 默认的外圆环颜色，百分比值之外的正常情况下圆环颜色 */
-	private static final int DEFAULT_SKIN_INVALID_COLOR = 0xFFCCCCCC;
+	static final int DEFAULT_SKIN_DEPTH = 15;
 
 	/** 百分比值改变时默认动画播放时长 */
-	private static final long DEFAULT_ANIMATION_LENGTH = 1500;
+	static final long DEFAULT_ANIMATION_LENGTH = 1500;
 
 	private static final long DEFAULT_CLICK_ANIMATION_LENGTH = 500;
 
-	private final DecimalFormat mPercentFormat = new DecimalFormat("0.0");
+	/** 检查各段百分比值之和时允许超出100的误差 */
+	private static final double SEGMENT_SUM_TOLERANCE = 1e-3;
+
+	/** 渲染模式：根据画笔使用的特性自动选择，硬件加速不支持时使用软件layer，否则不使用离屏layer */
+	public static final int RENDER_MODE_AUTO = 0;
+
+	/** 渲染模式：不使用离屏layer，直接硬件加速绘制 */
+	public static final int RENDER_MODE_HARDWARE = 1;
+
+	/** 渲染模式：使用常驻的硬件layer */
+	public static final int RENDER_MODE_HARDWARE_LAYER = 2;
+
+	/** 渲染模式：始终使用软件layer绘制 */
+	public static final int RENDER_MODE_SOFTWARE = 3;
+
+	/** 文本模式：每帧排版并绘制文本 */
+	public static final int TEXT_MODE_SHAPED = 0;
+
+	/** 文本模式：使用预先光栅化的共享字形图集拼接文本 */
+	public static final int TEXT_MODE_GLYPH_ATLAS = 1;
+
+	/** 外圆环着色方式：整段圆弧使用当前百分比对应的纯色 */
+	public static final int SKIN_MODE_SOLID = 0;
+
+	/** 外圆环着色方式：沿圆弧由起始颜色扫描渐变到结束颜色 */
+	public static final int SKIN_MODE_SWEEP_GRADIENT = 1;
+
+	/** 颜色插值方式：在sRGB空间中逐通道线性插值 */
+	public static final int COLOR_INTERPOLATION_RGB =
+			ColorGradientTable.INTERPOLATION_RGB;
+
+	/** 颜色插值方式：在线性RGB空间中插值 */
+	public static final int COLOR_INTERPOLATION_LINEAR_RGB =
+			ColorGradientTable.INTERPOLATION_LINEAR_RGB;
+
+	/** 颜色插值方式：在OKLab感知均匀颜色空间中插值 */
+	public static final int COLOR_INTERPOLATION_OKLAB =
+			ColorGradientTable.INTERPOLATION_OKLAB;
+
+	/** 百分比更新方式：每次调用{@link #setPercent(float)}立即重绘 */
+	public static final int UPDATE_MODE_IMMEDIATE = 0;
+
+	/** 百分比更新方式：只记录最新的值，在下一次垂直同步时统一应用 */
+	public static final int UPDATE_MODE_COALESCED = 1;
+
+	/** 流式进度的平滑方式：指数移动平均 */
+	public static final int SMOOTHING_EMA = LemonProgressStream.SMOOTHING_EMA;
+
+	/** 流式进度的平滑方式：临界阻尼弹簧 */
+	public static final int SMOOTHING_CRITICALLY_DAMPED =
+			LemonProgressStream.SMOOTHING_CRITICALLY_DAMPED;
+
+	/** 状态恢复方式：直接显示保存时动画的最终状态，不播放动画 */
+	public static final int RESTORE_MODE_JUMP = 0;
+
+	/** 状态恢复方式：从保存时的进度继续播放未完成的动画 */
+	public static final int RESTORE_MODE_RESUME = 1;
+
+	/** 状态恢复方式：从0开始完整播放到保存的百分比值 */
+	public static final int RESTORE_MODE_REPLAY = 2;
+
+	/** 动画帧率上限：使用{@link #setDefaultMaxFrameRate(int)}设置的全局上限 */
+	public static final int FRAME_RATE_DEFAULT = -1;
+
+	/** 动画帧率上限：不限制，每次垂直同步都推进动画 */
+	public static final int FRAME_RATE_UNLIMITED = 0;
+
+	/** 圆环绘制逻辑 */
+	private final LemonRenderer mRenderer;
+
+	private final LemonLayerController mLayerController;
+
+	/** 百分比动画状态，由{@link LemonAnimationDriver}驱动 */
+	private long mAnimationDuration = DEFAULT_ANIMATION_LENGTH;
+	private boolean mPercentAnimRunning = false;
+	private long mPercentAnimStartTime;
+	/** 动画开始时已经经过的时间，恢复未完成的动画时使用 */
+	private long mPercentAnimStartElapsed;
+	/** 百分比动画最近一帧的时间，用于统计实际播放的时长 */
+	private long mPercentAnimLastFrameTime;
+	private float mPercentAnimFrom;
+	private float mPercentAnimTo;
+
+	/** 中心圆点击动画状态，mHeartAnimMid为NaN时表示没有中间关键帧 */
+	private boolean mHeartAnimRunning = false;
+	private long mHeartAnimStartTime;
+	private long mHeartAnimStartElapsed;
+	private long mHeartAnimDuration;
+	private float mHeartAnimFrom;
+	private float mHeartAnimMid;
+	private float mHeartAnimTo;
 
-	/** 百分比文本画笔 */
-	private final TextPaint mTextPaint;
+	/** 分段圆环状态，各数组只在段数超过容量时重新分配 */
+	private int mSegmentCount;
+	private float[] mSegmentValues;
+	private float[] mSegmentFrom;
+	private float[] mSegmentTo;
+	private float[] mSegmentSweeps;
+	private int[] mSegmentColors;
+	private boolean mSegmentAnimRunning = false;
+	private long mSegmentAnimStartTime;
 
-	/** 中心圆画笔 */
-	private final Paint mHeartPaint;
+	/** 分段数值或颜色的版本号，每次重新计算圆弧角度时递增 */
+	private int mSegmentVersion;
 
-	/** 外围圆环画笔 */
-	private final Paint mSkinPaint;
+	/** 流式进度状态，第一次调用{@link #pushProgress(float)}时创建 */
+	private LemonProgressStream mProgressStream;
+	private boolean mStreaming = false;
 
-	private ObjectAnimator mArrivePercentAnimator;
-	private ValueAnimator mHeartClickAnimator;
+	/** 流式进度的显示值是否仍在变化，需要继续由{@link LemonAnimationDriver}驱动 */
+	private boolean mStreamRunning = false;
 
-	private RectF mBounds;
+	/** 是否已经注册到{@link LemonAnimationDriver}中，由驱动器维护 */
+	boolean mInAnimationDriver = false;
+
+	/** 动画帧率上限和驱动器维护的节流状态 */
+	private int mMaxFrameRate = FRAME_RATE_DEFAULT;
+	long mLastAnimationFrameTime = -1;
+	long mSkippedFrameCount;
+
+	/** 外围圆环所在的矩形，与{@link #mGeometry}同步更新 */
+	private final RectF mBounds = new RectF();
+
+	/** 局部重绘时复用的区域对象 */
+	private final Rect mDirtyRect = new Rect();
+
+	/** 调试用：累计标记为需要重绘的像素数量 */
+	private long mInvalidatedPixelCount;
+
+	/** 硬件绘制时的绘制命令录制，未开启录制时为null */
+	private LemonDrawRecording mDrawRecording;
+
+	/** 渲染统计，未开启统计时为null */
+	private LemonRenderStats mRenderStats;
 
 	private int mTextColor;
 	private int mSkinStartColor;
 	private int mSkinEndColor;
 	private int mHeartColor;
 	private int mHeartClickedColor;
+	/** 中心圆当前的绘制颜色，点击动画过程中在正常颜色与点击颜色之间变化 */
+	private int mHeartDrawColor;
 	private int mSkinDepth;
-	private int mSkinRawDepth;
+
+	/** 最近一次测量的测量规格、内边距和结果，mMemoWidth为-1时无效 */
+	private int mMemoWidthSpec;
+	private int mMemoHeightSpec;
+	private int mMemoPaddingLeft;
+	private int mMemoPaddingTop;
+	private int mMemoPaddingRight;
+	private int mMemoPaddingBottom;
+	private int mMemoWidth = -1;
+	private int mMemoHeight;
+
+	/** 圆环几何信息，只在尺寸、内边距或外围圆环宽度变化时重新计算 */
+	private LemonGeometry mGeometry;
+
 	private float mPercent;
 	private float mTouchPercent = 0f;
 	private boolean alwaysKeepInHeart = false;
 	private boolean downInHeartFirst = false;
 
+	private int mUpdateMode = UPDATE_MODE_IMMEDIATE;
+	private int mRestoreMode = RESTORE_MODE_JUMP;
+	private Choreographer.FrameCallback mPercentFrameCallback;
+	private boolean mPercentUpdatePending = false;
+	private float mPendingPercent;
+	private long mDroppedUpdateCount;
+
+	/** 其他线程发布、尚未在UI线程应用的百分比值 */
+	private final PublishedPercent mPublishedPercent = new PublishedPercent();
+
 	private OnPercentAnimationEndListener mOnPercentAnimationEndListener;
 	private OnHeartClickListener mOnHeartClickListener;
 
@@ -130,77 +282,32 @@ public class PercentLemon extends View {
 	 * @param context
 	 *            Context上下文对象
 	 */
-	@SuppressLint("NewApi")
 	public PercentLemon(Context context, AttributeSet attrs) {
 		super(context, attrs);
-		setLayerToSW(this);
 
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-			mHeartClickAnimator = ObjectAnimator.ofFloat(PercentLemon.this,
-					"BreathHeartPercent", 0f);
-			mHeartClickAnimator.setDuration(DEFAULT_CLICK_ANIMATION_LENGTH);
-			mArrivePercentAnimator = ObjectAnimator.ofFloat(PercentLemon.this,
-					"Percent", 0f);
-			mArrivePercentAnimator.addListener(new AnimatorListenerAdapter() {
-
-				@Override
-				public void onAnimationEnd(Animator animation) {
-					PercentLemon.this.setLayerToSW(PercentLemon.this);
-					if (mOnPercentAnimationEndListener != null) {
-						mOnPercentAnimationEndListener
-								.onPercentAnimationEnd(PercentLemon.this);
-					}
-				}
-			});
-		}
-
-		TypedArray a = context.getTheme().obtainStyledAttributes(attrs,
-				R.styleable.PercentLemon, 0, 0);
-		try {
-			mTextColor = a.getColor(R.styleable.PercentLemon_centerTextColor,
-					DEFAULT_TEXT_COLOR);
-			mHeartColor = a.getColor(R.styleable.PercentLemon_heartColor,
-					DEFAULT_HEART_COLOR_NORMAL);
-			mHeartClickedColor = a.getColor(
-					R.styleable.PercentLemon_heartClickedColor,
-					DEFAULT_HEART_COLOR_CLICKED);
-			setAnimationDuration(a.getInt(R.styleable.PercentLemon_duration,
-					(int) DEFAULT_ANIMATION_LENGTH));
-			if (!a.hasValue(R.styleable.PercentLemon_skinStartColor)
-					^ a.hasValue(R.styleable.PercentLemon_skinEndColor)) {
-				mSkinStartColor = a.getColor(
-						R.styleable.PercentLemon_skinStartColor,
-						DEFAULT_SKIN_START_COLOR);
-				mSkinEndColor = a.getColor(
-						R.styleable.PercentLemon_skinEndColor,
-						DEFAULT_SKIN_END_COLOR);
-			} else if (a.hasValue(R.styleable.PercentLemon_skinStartColor)) {
-				mSkinEndColor = mSkinStartColor = a.getColor(
-						R.styleable.PercentLemon_skinStartColor,
-						DEFAULT_SKIN_START_COLOR);
-			} else {
-				mSkinStartColor = mSkinEndColor = a.getColor(
-						R.styleable.PercentLemon_skinEndColor,
-						DEFAULT_SKIN_END_COLOR);
-			}
-			mSkinDepth = a.getInt(R.styleable.PercentLemon_skinDepth,
-					DEFAULT_SKIN_DEPTH);
-			mPercent = a.getFloat(R.styleable.PercentLemon_percent, 0f);
-			if (Float.compare(mPercent, 100.0f) > 0
-					|| Float.compare(mPercent, 0.0f) < 0) {
-				throw new IllegalArgumentException("百分比值必须在0到100之间");
-			}
-		} finally {
-			a.recycle();
-		}
-
-		mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-		mTextPaint.setColor(mTextColor);
-		mHeartPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		mHeartPaint.setColor(mHeartColor);
-		mHeartPaint.setStyle(Paint.Style.FILL);
-		mSkinPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		mSkinPaint.setStyle(Paint.Style.STROKE);
+		LemonStyle style = LemonStyle.obtain(context, attrs);
+		mTextColor = style.getTextColor();
+		mHeartColor = style.getHeartColor();
+		mHeartClickedColor = style.getHeartClickedColor();
+		setAnimationDuration(style.getAnimationDuration());
+		mSkinStartColor = style.getSkinStartColor();
+		mSkinEndColor = style.getSkinEndColor();
+		mSkinDepth = style.getSkinDepth();
+		setRestoreMode(style.getRestoreMode());
+		mPercent = style.getPercent();
+
+		mHeartDrawColor = mHeartColor;
+		mRenderer = new LemonRenderer(mTextColor, mHeartColor,
+				mHeartClickedColor, mSkinStartColor, mSkinEndColor, false);
+		updateGeometry();
+		mRenderer.setGlyphAtlasEnabled(
+				style.getTextMode() == TEXT_MODE_GLYPH_ATLAS);
+		mRenderer.setSweepGradientEnabled(
+				style.getSkinMode() == SKIN_MODE_SWEEP_GRADIENT);
+
+		mLayerController = new LemonLayerController(this,
+				style.getRenderMode());
+		applyLayerType();
 
 		if (this.isInEditMode()) {
 			setPercent(66.66f);
@@ -210,38 +317,27 @@ public class PercentLemon extends View {
 	@Override
 	protected void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
-
-		int mXCenter = (getWidth() + getPaddingLeft() - getPaddingRight()) / 2;
-		int mYCenter = (getHeight() + getPaddingTop() - getPaddingBottom()) / 2;
-		int mHeartRadius = Math.min(
-				mXCenter - getPaddingLeft() - mSkinRawDepth, mYCenter
-						- getPaddingTop() - mSkinRawDepth);
-		canvas.drawCircle(mXCenter, mYCenter, mHeartRadius, mHeartPaint);
-
-		if (Float.compare(mPercent, 0) >= 0) {
-			float radianAngle = (mPercent / 100) * 360;
-			mSkinPaint.setColor(getCurrentColor(mSkinStartColor, mSkinEndColor,
-					mPercent));
-			canvas.drawArc(mBounds, -90, radianAngle, false, mSkinPaint);
-			mSkinPaint.setColor(DEFAULT_SKIN_INVALID_COLOR);
-			canvas.drawArc(mBounds, -90 + radianAngle, 360 - radianAngle,
-					false, mSkinPaint);
-			String percentText = mPercentFormat.format(mPercent);
-			setRawTextSize(mHeartRadius / 2);
-			float mTxtWidth = mTextPaint.measureText(percentText, 0,
-					percentText.length());
-			FontMetrics fm = mTextPaint.getFontMetrics();
-			float mTxtHeight = (int) Math.ceil(fm.descent - fm.ascent);
-			setRawTextSize(mHeartRadius / 4);
-			float mTxtWidth2 = mTextPaint.measureText("%", 0, 1);
-			float mTxtHeight2 = (int) Math.ceil(fm.descent - fm.ascent);
-			setRawTextSize(mHeartRadius / 2);
-			canvas.drawText(percentText, mXCenter - (mTxtWidth + mTxtWidth2)
-					/ 2, mYCenter + mTxtHeight / 4, mTextPaint);
-			setRawTextSize(mHeartRadius / 4);
-			canvas.drawText("%", mXCenter - (mTxtWidth2 - mTxtWidth) / 2,
-					mYCenter + mTxtHeight / 4 + (mTxtHeight - mTxtHeight2) / 2,
-					mTextPaint);
+		LemonRenderStats stats = mRenderStats;
+		long start = stats != null ? System.nanoTime() : 0;
+		consumePublishedPercent();
+
+		LemonGeometry geometry = mGeometry;
+		if (geometry.heartRadius > 0) {
+			if (mDrawRecording != null && LemonDrawRecording.canRecord(canvas)) {
+				drawRecorded(canvas, mDrawRecording, geometry);
+			} else if (mSegmentCount > 0) {
+				mRenderer.drawSegments(canvas, geometry.xCenter,
+						geometry.yCenter, geometry.heartRadius, mBounds,
+						mSegmentSweeps, mSegmentColors, mSegmentCount,
+						mPercent, mHeartDrawColor);
+			} else {
+				mRenderer.draw(canvas, geometry.xCenter, geometry.yCenter,
+						geometry.heartRadius, mBounds, mPercent,
+						mHeartDrawColor);
+			}
+		}
+		if (stats != null) {
+			stats.recordDraw(System.nanoTime() - start);
 		}
 	}
 
@@ -298,65 +394,139 @@ public class PercentLemon extends View {
 	}
 
 	// 判断点击点是否落在圆环中心园内，如果落在中心圆内则返回true否则返回false
-	private Boolean pointInLemonHeart(float x, float y) {
-		float xx, yy;
-		if (Float.compare(x, mBounds.centerX()) > 0) {
-			xx = x - mBounds.centerX();
-		} else {
-			xx = mBounds.centerX() - x;
-		}
-		if (Float.compare(y, mBounds.centerY()) > 0) {
-			yy = y - mBounds.centerY();
-		} else {
-			yy = mBounds.centerY() - y;
-		}
-		xx *= xx;
-		yy *= yy;
-
-		float r = Math.min(mBounds.width() - mSkinRawDepth, mBounds.height()
-				- mSkinRawDepth) / 2;
-
-		if (Float.compare((float) Math.sqrt(xx + yy), r) < 0) {
-			return true;
-		}
-		return false;
+	private boolean pointInLemonHeart(float x, float y) {
+		return mGeometry.pointInHeart(x, y);
 	}
 
 	// 将中心圆的颜色渐变到点击颜色
-	@SuppressLint("NewApi")
 	private void startTouchDownAnimation() {
 		long localLength = 300;
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-			mHeartClickAnimator.setFloatValues(mTouchPercent, 100f);
-			mHeartClickAnimator.setDuration((long) (localLength - mTouchPercent
-					* localLength / 100));
-			mHeartClickAnimator.start();
-		} else {
-			mTouchPercent = 100f;
-			mHeartPaint.setColor(mHeartClickedColor);
-			invalidate();
-		}
+		startHeartAnimation(mTouchPercent, Float.NaN, 100f,
+				(long) (localLength - mTouchPercent * localLength / 100));
 	}
 
 	// 将中心圆的颜色渐变到正常颜色
-	@SuppressLint("NewApi")
 	private void startTouchUpAnimation(boolean playToEdn) {
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-			if (playToEdn && Float.compare(mTouchPercent, 100) < 0) {
-				mHeartClickAnimator.setFloatValues(mTouchPercent, 100f, 0f);
-				mHeartClickAnimator
-						.setDuration((long) (DEFAULT_CLICK_ANIMATION_LENGTH * 2 - mTouchPercent
-								* DEFAULT_CLICK_ANIMATION_LENGTH / 100));
+		if (playToEdn && Float.compare(mTouchPercent, 100) < 0) {
+			startHeartAnimation(mTouchPercent, 100f, 0f,
+					(long) (DEFAULT_CLICK_ANIMATION_LENGTH * 2 - mTouchPercent
+							* DEFAULT_CLICK_ANIMATION_LENGTH / 100));
+		} else {
+			startHeartAnimation(mTouchPercent, Float.NaN, 0f,
+					(long) (mTouchPercent * DEFAULT_CLICK_ANIMATION_LENGTH / 100));
+		}
+	}
+
+	private void startHeartAnimation(float from, float mid, float to,
+			long duration) {
+		mHeartAnimFrom = from;
+		mHeartAnimMid = mid;
+		mHeartAnimTo = to;
+		mHeartAnimDuration = duration;
+		mHeartAnimStartTime = -1;
+		mHeartAnimStartElapsed = 0;
+		mHeartAnimRunning = true;
+		LemonAnimationDriver.getInstance().start(this);
+	}
+
+	/**
+	 * 由{@link LemonAnimationDriver}在每一帧调用，推进正在播放的动画。
+	 * 
+	 * @param frameTimeMillis
+	 *            当前帧的时间，单位是毫秒
+	 * @return 是否还有动画在播放
+	 */
+	boolean doAnimationFrame(long frameTimeMillis) {
+		if (mHeartAnimRunning) {
+			if (mHeartAnimStartTime < 0) {
+				mHeartAnimStartTime = frameTimeMillis - mHeartAnimStartElapsed;
+			}
+			float fraction = getAnimationFraction(frameTimeMillis
+					- mHeartAnimStartTime, mHeartAnimDuration);
+			if (fraction >= 1f) {
+				mHeartAnimRunning = false;
+				setBreathHeartPercent(mHeartAnimTo);
 			} else {
-				mHeartClickAnimator.setFloatValues(mTouchPercent, 0f);
-				mHeartClickAnimator.setDuration((long) (mTouchPercent
-						* DEFAULT_CLICK_ANIMATION_LENGTH / 100));
+				float value = LemonAnimationDriver.interpolate(fraction);
+				if (Float.isNaN(mHeartAnimMid)) {
+					value = mHeartAnimFrom + (mHeartAnimTo - mHeartAnimFrom)
+							* value;
+				} else if (value < 0.5f) {
+					value = mHeartAnimFrom + (mHeartAnimMid - mHeartAnimFrom)
+							* value * 2;
+				} else {
+					value = mHeartAnimMid + (mHeartAnimTo - mHeartAnimMid)
+							* (value - 0.5f) * 2;
+				}
+				setBreathHeartPercent(value);
 			}
-			mHeartClickAnimator.start();
-		} else {
-			mTouchPercent = 0f;
-			mHeartPaint.setColor(mHeartColor);
-			invalidate();
+		}
+		if (mPercentAnimRunning) {
+			if (mPercentAnimStartTime < 0) {
+				mPercentAnimStartTime = frameTimeMillis
+						- mPercentAnimStartElapsed;
+			}
+			long elapsed = frameTimeMillis - mPercentAnimStartTime;
+			float fraction = getAnimationFraction(elapsed, mAnimationDuration);
+			mPercentAnimLastFrameTime = frameTimeMillis;
+			if (mRenderStats != null) {
+				mRenderStats.mAnimationFrameCount++;
+			}
+			if (fraction >= 1f) {
+				mPercentAnimRunning = false;
+				recordPercentAnimationTime();
+				applyPercent(mPercentAnimTo);
+				dispatchPercentAnimationEnd();
+			} else {
+				applyPercent(mPercentAnimFrom
+						+ (mPercentAnimTo - mPercentAnimFrom)
+						* LemonAnimationDriver.interpolate(fraction));
+			}
+		}
+		if (mStreamRunning) {
+			mStreamRunning = mProgressStream.step(frameTimeMillis, 0f, 100f);
+			applyPercent(mProgressStream.getValue());
+		}
+		if (mSegmentAnimRunning) {
+			if (mSegmentAnimStartTime < 0) {
+				mSegmentAnimStartTime = frameTimeMillis;
+			}
+			float fraction = getAnimationFraction(frameTimeMillis
+					- mSegmentAnimStartTime, mAnimationDuration);
+			if (fraction >= 1f) {
+				mSegmentAnimRunning = false;
+				System.arraycopy(mSegmentTo, 0, mSegmentValues, 0,
+						mSegmentCount);
+			} else {
+				float value = LemonAnimationDriver.interpolate(fraction);
+				for (int i = 0; i < mSegmentCount; i++) {
+					mSegmentValues[i] = mSegmentFrom[i]
+							+ (mSegmentTo[i] - mSegmentFrom[i]) * value;
+				}
+			}
+			applySegments();
+		}
+		return mHeartAnimRunning || mPercentAnimRunning || mStreamRunning
+				|| mSegmentAnimRunning;
+	}
+
+	// 按系统的动画时长缩放计算播放比例，缩放为0时动画在第一帧结束
+	private static float getAnimationFraction(long elapsed, long duration) {
+		long scaledDuration = getScaledDuration(duration);
+		if (scaledDuration <= 0) {
+			return 1f;
+		}
+		return Math.min(1f, (float) elapsed / scaledDuration);
+	}
+
+	private static long getScaledDuration(long duration) {
+		return (long) (duration * LemonAnimationDriver.getInstance()
+				.getDurationScale());
+	}
+
+	private void dispatchPercentAnimationEnd() {
+		if (mOnPercentAnimationEndListener != null) {
+			mOnPercentAnimationEndListener.onPercentAnimationEnd(this);
 		}
 	}
 
@@ -421,39 +591,271 @@ public class PercentLemon extends View {
 	}
 
 	/**
-	 * 设置百分比动画播放时间长度。默认长度是1500毫秒。
+	 * 设置此PercentLemon动画的帧率上限，例如30或60。默认为{@link #FRAME_RATE_DEFAULT}，
+	 * 使用{@link #setDefaultMaxFrameRate(int)}设置的全局上限。动画时长不受帧率上限影响，
+	 * 超过上限的帧直接跳过，不推进动画也不重绘。省电模式下帧率不超过30。
+	 * 
+	 * @param frameRate
+	 *            每秒帧数，{@link #FRAME_RATE_UNLIMITED}表示不限制
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数小于{@link #FRAME_RATE_DEFAULT}
+	 * @see #getSkippedFrameCount()
+	 */
+	public void setMaxFrameRate(int frameRate) {
+		if (frameRate < FRAME_RATE_DEFAULT) {
+			throw new IllegalArgumentException("无效的帧率上限：" + frameRate);
+		}
+		mMaxFrameRate = frameRate;
+	}
+
+	/**
+	 * 返回此PercentLemon动画的帧率上限。
+	 * 
+	 * @return 每秒帧数，或{@link #FRAME_RATE_DEFAULT}、{@link #FRAME_RATE_UNLIMITED}
+	 */
+	public int getMaxFrameRate() {
+		return mMaxFrameRate;
+	}
+
+	/**
+	 * 设置所有未单独设置帧率上限的PercentLemon使用的全局帧率上限，默认为{@link #FRAME_RATE_UNLIMITED}。
+	 * 只能在UI线程中调用。
+	 * 
+	 * @param frameRate
+	 *            每秒帧数，{@link #FRAME_RATE_UNLIMITED}表示不限制
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数小于0
+	 */
+	public static void setDefaultMaxFrameRate(int frameRate) {
+		if (frameRate < FRAME_RATE_UNLIMITED) {
+			throw new IllegalArgumentException("无效的帧率上限：" + frameRate);
+		}
+		LemonAnimationDriver.getInstance().setDefaultMaxFrameRate(frameRate);
+	}
+
+	/**
+	 * 返回全局帧率上限。只能在UI线程中调用。
+	 * 
+	 * @return 每秒帧数，或{@link #FRAME_RATE_UNLIMITED}
+	 */
+	public static int getDefaultMaxFrameRate() {
+		return LemonAnimationDriver.getInstance().getDefaultMaxFrameRate();
+	}
+
+	/**
+	 * 返回因帧率上限而跳过的动画帧数，即节省下来的动画推进和重绘次数。
+	 * 
+	 * @return 被跳过的帧数
+	 */
+	public long getSkippedFrameCount() {
+		return mSkippedFrameCount;
+	}
+
+	/**
+	 * 设置百分比动画播放时间长度。默认长度是1500毫秒。实际播放时长还要乘以系统设置中的动画时长缩放，
+	 * 系统关闭了动画时直接跳到结束状态。
 	 * 
 	 * @param duration
 	 *            动画时间长度，单位是毫秒。
 	 */
-	@SuppressLint("NewApi")
 	public void setAnimationDuration(long duration) {
-		if (mArrivePercentAnimator != null) {
-			mArrivePercentAnimator.setDuration(duration);
+		mAnimationDuration = duration;
+	}
+
+	/**
+	 * 设置颜色查找表的分辨率，即百分比0到100之间预先计算的颜色数量。默认为1024。
+	 * 
+	 * @param resolution
+	 *            查找表分辨率，不小于2
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数值小于2
+	 */
+	public void setColorTableResolution(int resolution) {
+		mRenderer.setColorTableResolution(resolution);
+		invalidateAll();
+	}
+
+	/**
+	 * 设置颜色渐变的插值方式，可选值为{@link #COLOR_INTERPOLATION_RGB}、
+	 * {@link #COLOR_INTERPOLATION_LINEAR_RGB}和{@link #COLOR_INTERPOLATION_OKLAB}。默认为
+	 * {@link #COLOR_INTERPOLATION_RGB}。插值结果预先计算到查找表中，不会增加每帧的开销。
+	 * 
+	 * @param interpolation
+	 *            颜色插值方式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的插值方式
+	 */
+	public void setColorInterpolation(int interpolation) {
+		if (interpolation < COLOR_INTERPOLATION_RGB
+				|| interpolation > COLOR_INTERPOLATION_OKLAB) {
+			throw new IllegalArgumentException("无效的颜色插值方式：" + interpolation);
 		}
+		mRenderer.setColorInterpolation(interpolation);
+		invalidateAll();
 	}
 
-	// 根据给定的起始、结束颜色和百分比值计算当由起始颜色渐变到结束颜色经历所给百分比值时刻当前颜色
-	private int getCurrentColor(int startColor, int endColor, float percent) {
-		if (Float.compare(percent, 100.0f) > 0)
-			percent = 100.0f;
-		if (Float.compare(percent, 0.0f) < 0)
-			percent = 0.0f;
+	/**
+	 * 设置中心文本的绘制方式，可选值为{@link #TEXT_MODE_SHAPED}和{@link #TEXT_MODE_GLYPH_ATLAS}。默认为
+	 * {@link #TEXT_MODE_SHAPED}。字形图集以中心圆半径和字体为键在所有实例间共享，超出内存上限时自动退回排版绘制。
+	 * 
+	 * @param textMode
+	 *            文本模式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的文本模式
+	 * @attr ref cn.changwentao.lemon.R#PercentLemon_textMode
+	 */
+	public void setTextMode(int textMode) {
+		if (textMode != TEXT_MODE_SHAPED && textMode != TEXT_MODE_GLYPH_ATLAS) {
+			throw new IllegalArgumentException("无效的文本模式：" + textMode);
+		}
+		if (textMode != getTextMode()) {
+			mRenderer.setGlyphAtlasEnabled(textMode == TEXT_MODE_GLYPH_ATLAS);
+			invalidateLabel();
+		}
+	}
+
+	/**
+	 * 返回中心文本的绘制方式。
+	 * 
+	 * @return 文本模式
+	 * @attr ref cn.changwentao.lemon.R#PercentLemon_textMode
+	 */
+	public int getTextMode() {
+		return mRenderer.getTextLayout().isGlyphAtlasEnabled()
+				? TEXT_MODE_GLYPH_ATLAS : TEXT_MODE_SHAPED;
+	}
+
+	/**
+	 * 设置外围圆环的着色方式，可选值为{@link #SKIN_MODE_SOLID}和{@link #SKIN_MODE_SWEEP_GRADIENT}。默认为
+	 * {@link #SKIN_MODE_SOLID}。扫描渐变的着色器只在颜色改变时重建，硬件加速绘制时不需要软件layer。
+	 * 分段显示时各段仍使用各自的颜色。
+	 * 
+	 * @param skinMode
+	 *            着色方式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的着色方式
+	 * @attr ref cn.changwentao.lemon.R#PercentLemon_skinMode
+	 */
+	public void setSkinMode(int skinMode) {
+		if (skinMode != SKIN_MODE_SOLID
+				&& skinMode != SKIN_MODE_SWEEP_GRADIENT) {
+			throw new IllegalArgumentException("无效的着色方式：" + skinMode);
+		}
+		if (skinMode != getSkinMode()) {
+			mRenderer.setSweepGradientEnabled(
+					skinMode == SKIN_MODE_SWEEP_GRADIENT);
+			invalidateRing();
+		}
+	}
+
+	/**
+	 * 返回外围圆环的着色方式。
+	 * 
+	 * @return 着色方式
+	 * @attr ref cn.changwentao.lemon.R#PercentLemon_skinMode
+	 */
+	public int getSkinMode() {
+		return mRenderer.isSweepGradientEnabled() ? SKIN_MODE_SWEEP_GRADIENT
+				: SKIN_MODE_SOLID;
+	}
+
+	// 通过录制绘制，输入未改变的部分直接回放
+	private void drawRecorded(Canvas canvas, LemonDrawRecording recording,
+			LemonGeometry geometry) {
+		int width = getWidth();
+		int height = getHeight();
+		int generation = mRenderer.getGeneration();
+		boolean segmented = mSegmentCount > 0;
+		boolean valid = segmented || Float.compare(mPercent, 0) >= 0;
+		Canvas target = recording.beginHeart(canvas, width, height, geometry,
+				generation, mHeartDrawColor);
+		if (target != null) {
+			mRenderer.drawHeart(target, geometry.xCenter, geometry.yCenter,
+					geometry.heartRadius, mHeartDrawColor);
+			recording.endHeart(canvas);
+		}
+		if (valid) {
+			target = recording.beginRing(canvas, width, height, geometry,
+					generation, segmented ? mSegmentVersion : Float
+							.floatToIntBits(mPercent), segmented);
+			if (target != null) {
+				if (segmented) {
+					mRenderer.drawSegmentRing(target, geometry.xCenter,
+							geometry.yCenter, geometry.heartRadius, mBounds,
+							mSegmentSweeps, mSegmentColors, mSegmentCount,
+							mPercent);
+				} else {
+					mRenderer.drawRing(target, geometry.xCenter,
+							geometry.yCenter, geometry.heartRadius, mBounds,
+							mPercent);
+				}
+				recording.endRing(canvas);
+			}
+		}
+		if (mRenderStats != null) {
+			mRenderStats.mReplayedPartCount += recording.getReplayedPartCount();
+			if (recording.isFrameReplayed()) {
+				mRenderStats.mReplayedDrawCount++;
+			}
+		}
+	}
+
+	/**
+	 * 设置硬件绘制时是否录制绘制命令，默认不录制。硬件加速时任何重绘都会重新执行onDraw生成整个View的显示列表，
+	 * 开启后输入未改变的部分直接回放上一次录制的{@link android.graphics.Picture}，一次调用代替逐条绘制：
+	 * 中心圆点击动画过程中圆弧、灰色轨道和文本部分回放，父View重绘等原因导致的输入未改变的重绘整帧回放。
+	 * <p>
+	 * 只在Android 6.0及以上的硬件画布上录制，更早的系统的硬件加速不支持绘制Picture。软件绘制时不录制，
+	 * 软件layer已经缓存了像素，回放Picture仍要重新光栅化每条命令，节省不了多少。回放次数见
+	 * {@link LemonRenderStats#getReplayedPartCount()}和{@link LemonRenderStats#getReplayedDrawCount()}。
+	 * 
+	 * @param enabled
+	 *            是否录制
+	 * @see #setRenderMode(int)
+	 */
+	public void setDrawRecordingEnabled(boolean enabled) {
+		if (enabled) {
+			if (mDrawRecording == null) {
+				mDrawRecording = new LemonDrawRecording();
+			}
+		} else {
+			mDrawRecording = null;
+		}
+	}
 
-		int startA = (startColor >> 24) & 0xff;
-		int startR = (startColor >> 16) & 0xff;
-		int startG = (startColor >> 8) & 0xff;
-		int startB = startColor & 0xff;
+	/**
+	 * 返回硬件绘制时是否录制绘制命令。
+	 * 
+	 * @return 是否录制
+	 */
+	public boolean isDrawRecordingEnabled() {
+		return mDrawRecording != null;
+	}
 
-		int endA = (endColor >> 24) & 0xff;
-		int endR = (endColor >> 16) & 0xff;
-		int endG = (endColor >> 8) & 0xff;
-		int endB = endColor & 0xff;
+	/**
+	 * 设置是否使用共享的静态图层缓存，默认不使用。开启后中心圆预先绘制到Bitmap中，
+	 * 相同样式的圆环共用同一张Bitmap，每帧绘制这张Bitmap、百分比圆弧、剩余的灰色轨道和文字。
+	 * 中心圆点击动画过程中和设置了颜色过滤器或阴影时仍然直接绘制。
+	 * 
+	 * @param enabled
+	 *            是否使用缓存
+	 * @see LemonLayerCache
+	 */
+	public void setLayerCacheEnabled(boolean enabled) {
+		if (enabled != mRenderer.isLayerCacheEnabled()) {
+			mRenderer.setLayerCache(enabled ? LemonLayerCache
+					.getInstance(getContext()) : null);
+			invalidateAll();
+		}
+	}
 
-		return (int) ((startA + (int) (percent * (endA - startA) / 100)) << 24)
-				| (int) ((startR + (int) (percent * (endR - startR) / 100)) << 16)
-				| (int) ((startG + (int) (percent * (endG - startG) / 100)) << 8)
-				| (int) ((startB + (int) (percent * (endB - startB) / 100)));
+	/**
+	 * 返回是否使用共享的静态图层缓存。
+	 * 
+	 * @return 是否使用缓存
+	 */
+	public boolean isLayerCacheEnabled() {
+		return mRenderer.isLayerCacheEnabled();
 	}
 
 	@SuppressLint("NewApi")
@@ -462,7 +864,25 @@ public class PercentLemon extends View {
 		// TODO:
 		Parcelable superState = super.onSaveInstanceState();
 		SavedState ss = new SavedState(superState);
-		ss.percent = mPercent;
+		ss.percent = getPercent();
+		long now = SystemClock.uptimeMillis();
+		if (mPercentAnimRunning) {
+			ss.percentAnimRunning = true;
+			ss.percentAnimFrom = mPercentAnimFrom;
+			ss.percentAnimTo = mPercentAnimTo;
+			ss.percentAnimFraction = getElapsedFraction(mPercentAnimStartTime,
+					mPercentAnimStartElapsed, mAnimationDuration, now);
+		}
+		ss.touchPercent = mTouchPercent;
+		if (mHeartAnimRunning) {
+			ss.heartAnimRunning = true;
+			ss.heartAnimFrom = mHeartAnimFrom;
+			ss.heartAnimMid = mHeartAnimMid;
+			ss.heartAnimTo = mHeartAnimTo;
+			ss.heartAnimDuration = mHeartAnimDuration;
+			ss.heartAnimFraction = getElapsedFraction(mHeartAnimStartTime,
+					mHeartAnimStartElapsed, mHeartAnimDuration, now);
+		}
 		ss.textColor = mTextColor;
 		ss.skinStartColor = mSkinStartColor;
 		ss.skinEndColor = mSkinEndColor;
@@ -482,7 +902,86 @@ public class PercentLemon extends View {
 		setHeartColor(ss.heartColor);
 		setHeartClickedColor(ss.heartClickedColor);
 		setSkinDepth(ss.skinDepth);
-		animatToPercent(ss.percent);
+
+		float finalPercent = ss.percentAnimRunning ? ss.percentAnimTo
+				: ss.percent;
+		switch (mRestoreMode) {
+		case RESTORE_MODE_REPLAY:
+			animatToPercent(finalPercent);
+			break;
+		case RESTORE_MODE_RESUME:
+			stopChangingPercent();
+			applyPercent(ss.percent);
+			if (ss.percentAnimRunning) {
+				mPercentAnimFrom = ss.percentAnimFrom;
+				mPercentAnimTo = ss.percentAnimTo;
+				mPercentAnimStartTime = -1;
+				mPercentAnimStartElapsed = (long) (ss.percentAnimFraction
+						* getScaledDuration(mAnimationDuration));
+				mPercentAnimRunning = true;
+				LemonAnimationDriver.getInstance().start(this);
+			}
+			restoreHeartState(ss);
+			break;
+		default:
+			// 点击状态不会跨越重建保留，中心圆的最终状态总是正常颜色
+			stopChangingPercent();
+			applyPercent(finalPercent);
+			break;
+		}
+	}
+
+	// 继续播放保存时未完成的中心圆动画，按下状态的中心圆渐变回正常颜色
+	private void restoreHeartState(SavedState ss) {
+		if (ss.heartAnimRunning && Float.compare(ss.heartAnimTo, 0f) == 0) {
+			setBreathHeartPercent(ss.touchPercent);
+			startHeartAnimation(ss.heartAnimFrom, ss.heartAnimMid, 0f,
+					ss.heartAnimDuration);
+			mHeartAnimStartElapsed = (long) (ss.heartAnimFraction
+					* getScaledDuration(ss.heartAnimDuration));
+		} else if (Float.compare(ss.touchPercent, 0f) > 0
+				|| ss.heartAnimRunning) {
+			setBreathHeartPercent(ss.touchPercent);
+			startTouchUpAnimation(false);
+		}
+	}
+
+	// 返回动画已经播放的比例，尚未收到第一帧时按开始时已经经过的时间计算
+	private static float getElapsedFraction(long startTime, long startElapsed,
+			long duration, long now) {
+		if (startTime < 0) {
+			return getAnimationFraction(startElapsed, duration);
+		}
+		return getAnimationFraction(now - startTime, duration);
+	}
+
+	/**
+	 * 设置从保存的状态恢复时如何处理未完成的动画，可选值为{@link #RESTORE_MODE_JUMP}、
+	 * {@link #RESTORE_MODE_RESUME}和{@link #RESTORE_MODE_REPLAY}。默认为{@link #RESTORE_MODE_JUMP}，
+	 * 界面重建时不播放任何动画。
+	 * 
+	 * @param restoreMode
+	 *            状态恢复方式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的恢复方式
+	 * @attr ref cn.changwentao.lemon.R#PercentLemon_restoreMode
+	 */
+	public void setRestoreMode(int restoreMode) {
+		if (restoreMode < RESTORE_MODE_JUMP
+				|| restoreMode > RESTORE_MODE_REPLAY) {
+			throw new IllegalArgumentException("无效的状态恢复方式：" + restoreMode);
+		}
+		mRestoreMode = restoreMode;
+	}
+
+	/**
+	 * 返回从保存的状态恢复时处理未完成动画的方式。
+	 * 
+	 * @return 状态恢复方式
+	 * @attr ref cn.changwentao.lemon.R#PercentLemon_restoreMode
+	 */
+	public int getRestoreMode() {
+		return mRestoreMode;
 	}
 
 	/**
@@ -490,6 +989,17 @@ public class PercentLemon extends View {
 	 */
 	static class SavedState extends BaseSavedState {
 		public float percent;
+		private boolean percentAnimRunning;
+		private float percentAnimFrom;
+		private float percentAnimTo;
+		private float percentAnimFraction;
+		private float touchPercent;
+		private boolean heartAnimRunning;
+		private float heartAnimFrom;
+		private float heartAnimMid;
+		private float heartAnimTo;
+		private long heartAnimDuration;
+		private float heartAnimFraction;
 		private int textColor;
 		private int skinStartColor;
 		private int skinEndColor;
@@ -504,6 +1014,17 @@ public class PercentLemon extends View {
 		public SavedState(Parcel source) {
 			super(source);
 			percent = source.readFloat();
+			percentAnimRunning = source.readInt() != 0;
+			percentAnimFrom = source.readFloat();
+			percentAnimTo = source.readFloat();
+			percentAnimFraction = source.readFloat();
+			touchPercent = source.readFloat();
+			heartAnimRunning = source.readInt() != 0;
+			heartAnimFrom = source.readFloat();
+			heartAnimMid = source.readFloat();
+			heartAnimTo = source.readFloat();
+			heartAnimDuration = source.readLong();
+			heartAnimFraction = source.readFloat();
 			textColor = source.readInt();
 			skinStartColor = source.readInt();
 			skinEndColor = source.readInt();
@@ -516,6 +1037,17 @@ public class PercentLemon extends View {
 		public void writeToParcel(Parcel dest, int flags) {
 			super.writeToParcel(dest, flags);
 			dest.writeFloat(percent);
+			dest.writeInt(percentAnimRunning ? 1 : 0);
+			dest.writeFloat(percentAnimFrom);
+			dest.writeFloat(percentAnimTo);
+			dest.writeFloat(percentAnimFraction);
+			dest.writeFloat(touchPercent);
+			dest.writeInt(heartAnimRunning ? 1 : 0);
+			dest.writeFloat(heartAnimFrom);
+			dest.writeFloat(heartAnimMid);
+			dest.writeFloat(heartAnimTo);
+			dest.writeLong(heartAnimDuration);
+			dest.writeFloat(heartAnimFraction);
 			dest.writeInt(textColor);
 			dest.writeInt(skinStartColor);
 			dest.writeInt(skinEndColor);
@@ -528,7 +1060,8 @@ public class PercentLemon extends View {
 		public String toString() {
 			return "PercentLemon.SavedState{"
 					+ Integer.toHexString(System.identityHashCode(this))
-					+ " percent=" + percent + "}";
+					+ " percent=" + percent + " animating="
+					+ percentAnimRunning + "}";
 		}
 
 		public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
@@ -556,8 +1089,38 @@ public class PercentLemon extends View {
 
 	@Override
 	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-		setMeasuredDimension(measureWidth(widthMeasureSpec, heightMeasureSpec),
-				measureHeight(widthMeasureSpec, heightMeasureSpec));
+		if (mRenderStats != null) {
+			mRenderStats.mMeasureCount++;
+		}
+		int paddingLeft = getPaddingLeft();
+		int paddingTop = getPaddingTop();
+		int paddingRight = getPaddingRight();
+		int paddingBottom = getPaddingBottom();
+		if (mMemoWidth >= 0 && widthMeasureSpec == mMemoWidthSpec
+				&& heightMeasureSpec == mMemoHeightSpec
+				&& paddingLeft == mMemoPaddingLeft
+				&& paddingTop == mMemoPaddingTop
+				&& paddingRight == mMemoPaddingRight
+				&& paddingBottom == mMemoPaddingBottom) {
+			if (mRenderStats != null) {
+				mRenderStats.mMeasureMemoHitCount++;
+			}
+		} else {
+			mMemoWidthSpec = widthMeasureSpec;
+			mMemoHeightSpec = heightMeasureSpec;
+			mMemoPaddingLeft = paddingLeft;
+			mMemoPaddingTop = paddingTop;
+			mMemoPaddingRight = paddingRight;
+			mMemoPaddingBottom = paddingBottom;
+			mMemoWidth = measureWidth(widthMeasureSpec, heightMeasureSpec);
+			mMemoHeight = measureHeight(widthMeasureSpec, heightMeasureSpec);
+		}
+		setMeasuredDimension(mMemoWidth, mMemoHeight);
+	}
+
+	// 测量结果依赖的属性改变时清除上一次的测量结果。文本大小由中心圆半径决定，随外围圆环宽度一起改变
+	private void clearMeasureMemo() {
+		mMemoWidth = -1;
 	}
 
 	/**
@@ -566,35 +1129,10 @@ public class PercentLemon extends View {
 	 * @return 宽度
 	 */
 	private int measureWidth(int width, int height) {
-		float result;
-		int widthMode = MeasureSpec.getMode(width);
-		int widthSize = MeasureSpec.getSize(width);
-
-		int heightMode = MeasureSpec.getMode(height);
-		int contentHeightSize = MeasureSpec.getSize(height) - getPaddingTop()
-				- getPaddingBottom();
-		if (contentHeightSize < 0) {
-			contentHeightSize = 0;
-		}
-
-		if (widthMode == MeasureSpec.EXACTLY) {
-			result = widthSize;
-		} else {
-			if (heightMode == MeasureSpec.EXACTLY) {
-				result = getPaddingLeft() + getPaddingRight()
-						+ contentHeightSize;
-			} else {
-				result = getPaddingLeft() + getPaddingRight()
-						+ getSuggestedMinimumWidth();
-			}
-			if (widthMode == MeasureSpec.AT_MOST) {
-				result = Math.min(result, widthSize);
-			}
-		}
-		if (localLOG) {
-			Log.i(TAG, "宽度：" + result);
-		}
-		return (int) Math.ceil(result);
+		int result = LemonMeasure.measureWidth(width, height, getPaddingLeft(),
+				getPaddingTop(), getPaddingRight(), getPaddingBottom(),
+				getSuggestedMinimumWidth());
+		return result;
 	}
 
 	/**
@@ -603,48 +1141,119 @@ public class PercentLemon extends View {
 	 * @return 高度
 	 */
 	private int measureHeight(int width, int height) {
-		float result;
-		int heightMode = MeasureSpec.getMode(height);
-		int heightSize = MeasureSpec.getSize(height);
+		int result = LemonMeasure.measureHeight(width, height,
+				getPaddingLeft(), getPaddingTop(), getPaddingRight(),
+				getPaddingBottom(), getSuggestedMinimumHeight());
+		return result;
+	}
 
-		int widthMode = MeasureSpec.getMode(width);
-		int contentWidthSize = MeasureSpec.getSize(width) - getPaddingLeft()
-				- getPaddingRight();
-		if (contentWidthSize < 0) {
-			contentWidthSize = 0;
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		updateGeometry();
+	}
+
+	@Override
+	public void setPadding(int left, int top, int right, int bottom) {
+		super.setPadding(left, top, right, bottom);
+		clearMeasureMemo();
+		updateGeometry();
+	}
+
+	@SuppressLint("NewApi")
+	@Override
+	public void setPaddingRelative(int start, int top, int end, int bottom) {
+		super.setPaddingRelative(start, top, end, bottom);
+		clearMeasureMemo();
+		updateGeometry();
+	}
+
+	// 根据当前尺寸、内边距和外围圆环宽度比重重新计算圆环几何信息
+	private void updateGeometry() {
+		if (mRenderer == null) {
+			// 父类构造方法中设置内边距时尚未初始化，构造完成后会重新计算
+			return;
 		}
+		LemonGeometry geometry = LemonGeometry.compute(getWidth(),
+				getHeight(), getPaddingLeft(), getPaddingTop(),
+				getPaddingRight(), getPaddingBottom(), mSkinDepth);
+		mGeometry = geometry;
+		mRenderer.setSkinRawDepth(geometry.skinRawDepth);
+		mBounds.set(geometry.boundsLeft, geometry.boundsTop,
+				geometry.boundsRight, geometry.boundsBottom);
+	}
+
+	// 将外围圆环及其包围的区域标记为需要重绘
+	private void invalidateRing() {
+		LemonGeometry geometry = mGeometry;
+		int skinRawDepth = geometry.skinRawDepth;
+		invalidateRegion((int) Math.floor(mBounds.left - skinRawDepth),
+				(int) Math.floor(mBounds.top - skinRawDepth),
+				(int) Math.ceil(mBounds.right + skinRawDepth),
+				(int) Math.ceil(mBounds.bottom + skinRawDepth));
+	}
+
+	// 将中心圆所在区域标记为需要重绘
+	private void invalidateHeart() {
+		LemonGeometry geometry = mGeometry;
+		int xCenter = geometry.xCenter;
+		int yCenter = geometry.yCenter;
+		int r = geometry.heartRadius + 1;
+		invalidateRegion(xCenter - r, yCenter - r, xCenter + r, yCenter + r);
+	}
 
-		if (heightMode == MeasureSpec.EXACTLY) {
-			result = heightSize;
+	// 将中心百分比文本所在区域标记为需要重绘
+	private void invalidateLabel() {
+		if (mRenderer.getTextLayout().getBounds(mGeometry.xCenter,
+				mGeometry.yCenter, mDirtyRect)) {
+			invalidateRegion(mDirtyRect.left, mDirtyRect.top,
+					mDirtyRect.right, mDirtyRect.bottom);
 		} else {
-			if (widthMode == MeasureSpec.EXACTLY) {
-				result = getPaddingTop() + getPaddingBottom()
-						+ contentWidthSize;
-			} else {
-				result = getPaddingTop() + getPaddingBottom()
-						+ getSuggestedMinimumHeight();
-			}
-			if (heightMode == MeasureSpec.AT_MOST) {
-				result = Math.min(result, heightSize);
-			}
+			invalidateHeart();
 		}
-		if (localLOG) {
-			Log.i(TAG, "高度：" + result);
+	}
+
+	private void invalidateRegion(int left, int top, int right, int bottom) {
+		int width = getWidth();
+		int height = getHeight();
+		int shadowExtent = mRenderer.getShadowExtent();
+		left = Math.max(left - shadowExtent, 0);
+		top = Math.max(top - shadowExtent, 0);
+		right = Math.min(right + shadowExtent, width);
+		bottom = Math.min(bottom + shadowExtent, height);
+		if (right > left && bottom > top) {
+			recordInvalidate((long) (right - left) * (bottom - top));
+			invalidate(left, top, right, bottom);
 		}
-		return (int) Math.ceil(result);
 	}
 
-	@Override
-	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-		int mXCenter = (w + getPaddingLeft() - getPaddingRight()) / 2;
-		int mYCenter = (h + getPaddingTop() - getPaddingBottom()) / 2;
-		int mRadius = Math.min(mXCenter - getPaddingLeft(), mYCenter
-				- getPaddingTop());
-		mSkinRawDepth = (int) (mSkinDepth / 100.0 * mRadius);
-		mSkinPaint.setStrokeWidth(mSkinRawDepth);
-		mBounds = new RectF(mXCenter - mRadius + mSkinRawDepth / 2, mYCenter
-				- mRadius + mSkinRawDepth / 2, mXCenter + mRadius
-				- mSkinRawDepth / 2, mYCenter + mRadius - mSkinRawDepth / 2);
+	// 标记整个View需要重绘，与invalidateRegion一样计入重绘统计
+	private void invalidateAll() {
+		recordInvalidate((long) getWidth() * getHeight());
+		invalidate();
+	}
+
+	// 所有重绘请求都经过这里计数，只能在UI线程调用
+	private void recordInvalidate(long pixelCount) {
+		mInvalidatedPixelCount += pixelCount;
+		if (mRenderStats != null) {
+			mRenderStats.recordInvalidate(pixelCount);
+		}
+	}
+
+	/**
+	 * 调试用：返回自创建或上次调用{@link #resetInvalidatedPixelCount()}以来，因属性变化而标记为需要重绘的像素总数。
+	 * 
+	 * @return 累计重绘像素数量
+	 */
+	public long getInvalidatedPixelCount() {
+		return mInvalidatedPixelCount;
+	}
+
+	/**
+	 * 调试用：将累计重绘像素数量清零。
+	 */
+	public void resetInvalidatedPixelCount() {
+		mInvalidatedPixelCount = 0;
 	}
 
 	/**
@@ -655,16 +1264,10 @@ public class PercentLemon extends View {
 	 * @attr ref cn.changwentao.lemon.R#PercentLemon_centerTextColor
 	 */
 	public void setTextColor(int color) {
-		if (mTextPaint.getColor() != color) {
+		if (mRenderer.getTextColor() != color) {
 			mTextColor = color;
-			mTextPaint.setColor(mTextColor);
-			invalidate();
-		}
-	}
-
-	private void setRawTextSize(float size) {
-		if (Float.compare(size, mTextPaint.getTextSize()) != 0) {
-			mTextPaint.setTextSize(size);
+			mRenderer.setTextColor(mTextColor);
+			invalidateLabel();
 		}
 	}
 
@@ -678,8 +1281,9 @@ public class PercentLemon extends View {
 	public void setHeartColor(int heartColor) {
 		if (heartColor != mHeartColor) {
 			mHeartColor = heartColor;
-			mHeartPaint.setColor(mHeartColor);
-			invalidate();
+			mRenderer.setHeartColors(mHeartColor, mHeartClickedColor);
+			mHeartDrawColor = mHeartColor;
+			invalidateHeart();
 		}
 	}
 
@@ -693,20 +1297,14 @@ public class PercentLemon extends View {
 	public void setHeartClickedColor(int heartClickedColor) {
 		if (heartClickedColor != mHeartClickedColor) {
 			mHeartClickedColor = heartClickedColor;
+			mRenderer.setHeartColors(mHeartColor, mHeartClickedColor);
 		}
 	}
 
-	@SuppressWarnings("unused")
 	private void setBreathHeartPercent(float percent) {
 		mTouchPercent = percent;
-		mHeartPaint.setColor(getCurrentColor(mHeartColor, mHeartClickedColor,
-				percent));
-		invalidate();
-	}
-
-	@SuppressWarnings("unused")
-	private float getBreathHeartPercent() {
-		return mTouchPercent;
+		mHeartDrawColor = mRenderer.getHeartColor(percent);
+		invalidateHeart();
 	}
 
 	/**
@@ -733,7 +1331,8 @@ public class PercentLemon extends View {
 		if (startColor != mSkinStartColor || endColor != mSkinEndColor) {
 			mSkinStartColor = startColor;
 			mSkinEndColor = endColor;
-			invalidate();
+			mRenderer.setSkinColors(mSkinStartColor, mSkinEndColor);
+			invalidateRing();
 		}
 	}
 
@@ -752,12 +1351,54 @@ public class PercentLemon extends View {
 				throw new IllegalArgumentException("宽度比重必须在1到50之间");
 			}
 			mSkinDepth = skinDepth;
-			invalidate();
+			clearMeasureMemo();
+			updateGeometry();
+			invalidateAll();
 		}
 	}
 
+	/**
+	 * 为中心圆和外围圆环设置阴影，参数含义与{@link android.graphics.Paint#setShadowLayer(float, float, float, int)}
+	 * 相同，半径为0时清除阴影。阴影绘制在圆环之外，需要足够的内边距才能完整显示。
+	 * <p>
+	 * Android 9以下的硬件加速不绘制文本以外图形的阴影，{@link #RENDER_MODE_AUTO}模式下此时改用软件layer。
+	 *
+	 * @param radius
+	 *            阴影模糊半径
+	 * @param dx
+	 *            阴影水平偏移
+	 * @param dy
+	 *            阴影垂直偏移
+	 * @param shadowColor
+	 *            阴影颜色
+	 */
+	public void setShadowLayer(float radius, float dx, float dy,
+			int shadowColor) {
+		mRenderer.setShadowLayer(Math.max(radius, 0), dx, dy, shadowColor);
+		applyLayerType();
+		invalidateAll();
+	}
+
+	/**
+	 * 清除中心圆和外围圆环的阴影。
+	 */
+	public void clearShadowLayer() {
+		setShadowLayer(0, 0, 0, 0);
+	}
+
+	/**
+	 * 返回是否设置了阴影。
+	 *
+	 * @return 是否设置了阴影
+	 */
+	public boolean hasShadowLayer() {
+		return mRenderer.hasShadowLayer();
+	}
+
 	/**
 	 * 设置百分比值，不包含动画过渡。如果需要动画过渡，请调用{@link #animatToPercent(float)}。
+	 * <p>
+	 * 在{@link #UPDATE_MODE_COALESCED}模式下只记录最新的值，在下一帧统一应用。
 	 * 
 	 * @param percent
 	 *            百分比值0到100之间
@@ -767,16 +1408,150 @@ public class PercentLemon extends View {
 	 */
 	@SuppressLint("NewApi")
 	public void setPercent(float percent) {
+		stopStreaming();
+		stopSegments();
+		if (mUpdateMode == UPDATE_MODE_COALESCED
+				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+				&& !mPercentAnimRunning) {
+			if (Float.compare(percent, 100) > 0
+					|| Float.compare(percent, 0) < 0) {
+				throw new IllegalArgumentException("百分比值必须在0到100之间");
+			}
+			mPendingPercent = percent;
+			if (mPercentUpdatePending) {
+				mDroppedUpdateCount++;
+			} else {
+				mPercentUpdatePending = true;
+				Choreographer.getInstance().postFrameCallback(
+						getPercentFrameCallback());
+			}
+			return;
+		}
+		applyPercent(percent);
+	}
+
+	private void applyPercent(float percent) {
 		if (Float.compare(percent, mPercent) != 0) {
 			if (Float.compare(percent, 100) > 0
 					|| Float.compare(percent, 0) < 0) {
 				throw new IllegalArgumentException("百分比值必须在0到100之间");
 			}
 			mPercent = percent;
-			invalidate();
+			invalidateRing();
 		}
 	}
 
+	/**
+	 * 从任意线程发布新的百分比值，可以在非UI线程中调用。
+	 * <p>
+	 * 该方法不加锁，也不会为每次调用创建对象：值被写入一个原子变量，View在下一帧绘制时读取最后写入的值。
+	 * 连续发布的多个值中只有最后一个会被显示。正在播放百分比动画、分段显示或流式输入时，发布的值被丢弃。
+	 * 
+	 * @param percent
+	 *            百分比值0到100之间
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数值不在0到100之间
+	 */
+	@SuppressLint("NewApi")
+	public void publishPercent(float percent) {
+		if (Float.compare(percent, 100) > 0 || Float.compare(percent, 0) < 0) {
+			throw new IllegalArgumentException("百分比值必须在0到100之间");
+		}
+		if (mPublishedPercent.publish(percent)) {
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+				postInvalidateOnAnimation();
+			} else {
+				postInvalidate();
+			}
+		}
+	}
+
+	// 在UI线程中读取并应用其他线程最后发布的百分比值，百分比由动画、分段或流式输入控制时丢弃
+	private void consumePublishedPercent() {
+		float published = mPublishedPercent.take();
+		if (!Float.isNaN(published)) {
+			// publishPercent可能在任意线程调用，它发出的整体重绘在这里由UI线程补记，每次发出对应一次取出
+			recordInvalidate((long) getWidth() * getHeight());
+			if (!isPercentDriven()) {
+				mPercent = published;
+			}
+		}
+	}
+
+	// 百分比值是否正由动画、分段显示或流式输入决定
+	private boolean isPercentDriven() {
+		return mPercentAnimRunning || mSegmentCount > 0 || mStreaming;
+	}
+
+	@SuppressLint("NewApi")
+	private Choreographer.FrameCallback getPercentFrameCallback() {
+		if (mPercentFrameCallback == null) {
+			mPercentFrameCallback = new Choreographer.FrameCallback() {
+
+				@Override
+				public void doFrame(long frameTimeNanos) {
+					mPercentUpdatePending = false;
+					applyPercent(mPendingPercent);
+				}
+			};
+		}
+		return mPercentFrameCallback;
+	}
+
+	@SuppressLint("NewApi")
+	private void cancelPendingPercent() {
+		if (mPercentUpdatePending) {
+			mPercentUpdatePending = false;
+			Choreographer.getInstance().removeFrameCallback(
+					mPercentFrameCallback);
+		}
+	}
+
+	/**
+	 * 设置{@link #setPercent(float)}的更新方式，可选值为{@link #UPDATE_MODE_IMMEDIATE}和
+	 * {@link #UPDATE_MODE_COALESCED}。默认为{@link #UPDATE_MODE_IMMEDIATE}。
+	 * <p>
+	 * 当百分比值的更新频率远高于屏幕刷新率时（例如来自传感器或下载进度回调），使用
+	 * {@link #UPDATE_MODE_COALESCED}可以保证每次垂直同步最多重绘一次。该模式需要Android 4.1及以上版本，
+	 * 更低的版本上等同于{@link #UPDATE_MODE_IMMEDIATE}。
+	 * 
+	 * @param updateMode
+	 *            更新方式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的更新方式
+	 */
+	public void setUpdateMode(int updateMode) {
+		if (updateMode != UPDATE_MODE_IMMEDIATE
+				&& updateMode != UPDATE_MODE_COALESCED) {
+			throw new IllegalArgumentException("无效的更新方式：" + updateMode);
+		}
+		if (updateMode != mUpdateMode) {
+			mUpdateMode = updateMode;
+			if (mPercentUpdatePending) {
+				cancelPendingPercent();
+				applyPercent(mPendingPercent);
+			}
+		}
+	}
+
+	/**
+	 * 返回{@link #setPercent(float)}的更新方式。
+	 * 
+	 * @return 更新方式
+	 */
+	public int getUpdateMode() {
+		return mUpdateMode;
+	}
+
+	/**
+	 * 返回在{@link #UPDATE_MODE_COALESCED}模式下，因同一帧内有更新的值而被丢弃的百分比更新次数。
+	 * 
+	 * @return 被丢弃的更新次数
+	 */
+	public long getDroppedUpdateCount() {
+		return mDroppedUpdateCount;
+	}
+
 	/**
 	 * 设置百分比值，包含动画过渡。如果不需要动画过渡，请调用{@link #setPercent(float)}。
 	 * 
@@ -785,56 +1560,349 @@ public class PercentLemon extends View {
 	 * @throws IllegalArgumentException
 	 *             如果传递的参数值不在0到100之间
 	 */
-	@SuppressLint("NewApi")
 	public void animatToPercent(float toValue) {
 		if (Float.compare(toValue, 100) > 0 || Float.compare(toValue, 0) < 0) {
 			throw new IllegalArgumentException("百分比值必须在0到100之间");
 		}
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-			setLayerToHW(this);
-			stopChangingPercent();
-			if (Float.compare(toValue, mPercent) != 0) {
-				mArrivePercentAnimator.setFloatValues(toValue);
-			} else {
-				mArrivePercentAnimator.setFloatValues(0.0f, toValue);
+		stopChangingPercent();
+		mPercentAnimFrom = Float.compare(toValue, mPercent) != 0 ? mPercent
+				: 0.0f;
+		mPercentAnimTo = toValue;
+		mPercentAnimStartTime = -1;
+		mPercentAnimStartElapsed = 0;
+		mPercentAnimRunning = true;
+		LemonAnimationDriver.getInstance().start(this);
+	}
+
+	/**
+	 * 将圆环显示为多段首尾相接的圆弧，例如已用、保留和空闲空间。各段从顶部开始按顺序顺时针排列，
+	 * 剩余部分显示为灰色轨道，中心文本显示各段之和。调用{@link #setPercent(float)}、
+	 * {@link #animatToPercent(float)}或{@link #pushProgress(float)}会退出分段显示。
+	 * <p>
+	 * 参数数组的内容会被复制，之后修改数组不影响显示。
+	 * 
+	 * @param values
+	 *            各段的百分比值，每段不小于0且总和不大于100
+	 * @param colors
+	 *            各段的颜色，长度与values相同
+	 * @throws IllegalArgumentException
+	 *             如果数组长度不同，或百分比值不符合要求
+	 */
+	public void setSegments(float[] values, int[] colors) {
+		if (values.length != colors.length) {
+			throw new IllegalArgumentException("百分比值与颜色的数量必须相同");
+		}
+		checkSegments(values);
+		stopChangingPercent();
+		int count = values.length;
+		if (mSegmentValues == null || mSegmentValues.length < count) {
+			mSegmentValues = new float[count];
+			mSegmentFrom = new float[count];
+			mSegmentTo = new float[count];
+			mSegmentSweeps = new float[count];
+			mSegmentColors = new int[count];
+		}
+		System.arraycopy(values, 0, mSegmentValues, 0, count);
+		System.arraycopy(colors, 0, mSegmentColors, 0, count);
+		mSegmentCount = count;
+		applySegments();
+	}
+
+	/**
+	 * 以动画过渡到新的各段百分比值，段数和颜色保持不变。动画过程中不分配对象。
+	 * 
+	 * @param values
+	 *            各段的百分比值，长度必须与当前段数相同
+	 * @throws IllegalArgumentException
+	 *             如果当前不是分段显示、数组长度与段数不同，或百分比值不符合要求
+	 */
+	public void animateToSegments(float[] values) {
+		if (mSegmentCount == 0 || values.length != mSegmentCount) {
+			throw new IllegalArgumentException("百分比值的数量必须与当前段数相同");
+		}
+		checkSegments(values);
+		System.arraycopy(mSegmentValues, 0, mSegmentFrom, 0, mSegmentCount);
+		System.arraycopy(values, 0, mSegmentTo, 0, mSegmentCount);
+		mSegmentAnimStartTime = -1;
+		mSegmentAnimRunning = true;
+		LemonAnimationDriver.getInstance().start(this);
+	}
+
+	/**
+	 * 返回分段显示的段数，不是分段显示时返回0。
+	 * 
+	 * @return 段数
+	 */
+	public int getSegmentCount() {
+		return mSegmentCount;
+	}
+
+	/**
+	 * 返回某一段当前显示的百分比值。
+	 * 
+	 * @param index
+	 *            段序号
+	 * @return 百分比
+	 */
+	public float getSegmentValue(int index) {
+		if (index < 0 || index >= mSegmentCount) {
+			throw new IndexOutOfBoundsException("段序号超出范围：" + index);
+		}
+		return mSegmentValues[index];
+	}
+
+	// 在double中求和并允许少量误差，避免总和恰为100的输入因float舍入而被拒绝，超出的部分由applySegments截断
+	private static void checkSegments(float[] values) {
+		double sum = 0;
+		for (float value : values) {
+			if (Float.compare(value, 0) < 0) {
+				throw new IllegalArgumentException("每段百分比值不能小于0");
 			}
-			mArrivePercentAnimator.start();
-		} else {
-			setPercent(toValue);
+			sum += value;
+		}
+		if (sum > 100 + SEGMENT_SUM_TOLERANCE) {
+			throw new IllegalArgumentException("各段百分比值之和不能大于100");
+		}
+	}
+
+	// 各段数值变化后重新计算圆弧角度和总百分比，checkSegments允许的误差使总和可能略大于100，
+	// 每段截断到剩余的百分比，使圆弧角度之和不超过360度
+	private void applySegments() {
+		float sum = 0;
+		for (int i = 0; i < mSegmentCount; i++) {
+			float value = Math.max(Math.min(mSegmentValues[i], 100 - sum), 0);
+			mSegmentSweeps[i] = value / 100 * 360;
+			sum += value;
+		}
+		mSegmentVersion++;
+		mPercent = Math.min(sum, 100f);
+		invalidateRing();
+	}
+
+	// 退出分段显示，百分比值可能与各段之和相同，因此需要主动重绘
+	private void stopSegments() {
+		if (mSegmentCount > 0) {
+			mSegmentCount = 0;
+			mSegmentAnimRunning = false;
+			invalidateRing();
+		}
+	}
+
+	/**
+	 * 以流式方式输入一个进度采样，适用于下载进度等不规则、带噪声的数据源。只能在UI线程中调用。
+	 * <p>
+	 * 采样不会重新开始动画：显示值由共享的帧回调逐帧推进，根据最近的采样速度外推并按
+	 * {@link #setSmoothing(int)}设置的方式平滑，以屏幕刷新率连续变化。调用{@link #setPercent(float)}或
+	 * {@link #animatToPercent(float)}会结束流式输入。
+	 * 
+	 * @param percent
+	 *            百分比值0到100之间
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数值不在0到100之间
+	 */
+	public void pushProgress(float percent) {
+		if (Float.compare(percent, 100) > 0 || Float.compare(percent, 0) < 0) {
+			throw new IllegalArgumentException("百分比值必须在0到100之间");
+		}
+		LemonProgressStream stream = getProgressStream();
+		if (!mStreaming) {
+			stopChangingPercent();
+			stream.reset(mPercent);
+			mStreaming = true;
+		}
+		stream.push(SystemClock.uptimeMillis(), percent);
+		if (!mStreamRunning) {
+			mStreamRunning = true;
+			LemonAnimationDriver.getInstance().start(this);
+		}
+	}
+
+	private void stopStreaming() {
+		mStreaming = false;
+		mStreamRunning = false;
+	}
+
+	/**
+	 * 设置流式进度的平滑方式，可选值为{@link #SMOOTHING_EMA}和{@link #SMOOTHING_CRITICALLY_DAMPED}。默认为
+	 * {@link #SMOOTHING_CRITICALLY_DAMPED}。
+	 * 
+	 * @param smoothing
+	 *            平滑方式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的平滑方式
+	 */
+	public void setSmoothing(int smoothing) {
+		if (smoothing != SMOOTHING_EMA
+				&& smoothing != SMOOTHING_CRITICALLY_DAMPED) {
+			throw new IllegalArgumentException("无效的平滑方式：" + smoothing);
 		}
+		getProgressStream().setSmoothing(smoothing);
 	}
 
 	/**
-	 * 返回PercentLemon当前显示的百分值。
+	 * 返回流式进度的平滑方式。
+	 * 
+	 * @return 平滑方式
+	 */
+	public int getSmoothing() {
+		return getProgressStream().getSmoothing();
+	}
+
+	/**
+	 * 设置流式进度的平滑时间，时间越长显示值越平稳，跟随采样也越慢。默认为200毫秒，为0时不做平滑。
+	 * 
+	 * @param smoothingTime
+	 *            平滑时间，单位毫秒
+	 * @throws IllegalArgumentException
+	 *             如果平滑时间小于0
+	 */
+	public void setSmoothingTime(long smoothingTime) {
+		if (smoothingTime < 0) {
+			throw new IllegalArgumentException("平滑时间不能小于0");
+		}
+		getProgressStream().setSmoothingTime(smoothingTime);
+	}
+
+	/**
+	 * 返回流式进度的平滑时间。
+	 * 
+	 * @return 平滑时间，单位毫秒
+	 */
+	public long getSmoothingTime() {
+		return getProgressStream().getSmoothingTime();
+	}
+
+	private LemonProgressStream getProgressStream() {
+		if (mProgressStream == null) {
+			mProgressStream = new LemonProgressStream();
+		}
+		return mProgressStream;
+	}
+
+	/**
+	 * 返回PercentLemon当前显示的百分值。如果在{@link #UPDATE_MODE_COALESCED}模式下设置了尚未应用的值，
+	 * 或者其他线程通过{@link #publishPercent(float)}发布了尚未绘制的值，返回最后设置或发布的值，即下一帧将要显示的值。
 	 * 
 	 * @return 百分比
 	 * @attr ref cn.changwentao.lemon.R#PercentLemon_percent
 	 */
 	public float getPercent() {
+		if (mPercentUpdatePending) {
+			return mPendingPercent;
+		}
+		if (!isPercentDriven()) {
+			float published = mPublishedPercent.peek();
+			if (!Float.isNaN(published)) {
+				return published;
+			}
+		}
 		return mPercent;
 	}
 
-	@SuppressLint("NewApi")
 	private void stopChangingPercent() {
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-			if (mArrivePercentAnimator.isRunning())
-				mArrivePercentAnimator.cancel();
+		cancelPendingPercent();
+		stopStreaming();
+		stopSegments();
+		if (mPercentAnimRunning) {
+			mPercentAnimRunning = false;
+			recordPercentAnimationTime();
+			dispatchPercentAnimationEnd();
 		}
 	}
 
-	@SuppressLint("NewApi")
-	private void setLayerToSW(View v) {
-		if (!v.isInEditMode()
-				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-			setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+	// 将百分比动画在此View中实际播放的时长计入统计，包括被中途取消的动画，但不包括恢复前已经播放的部分
+	private void recordPercentAnimationTime() {
+		if (mRenderStats != null && mPercentAnimStartTime >= 0) {
+			mRenderStats.mAnimationMillis += mPercentAnimLastFrameTime
+					- mPercentAnimStartTime - mPercentAnimStartElapsed;
 		}
 	}
 
-	@SuppressLint("NewApi")
-	private void setLayerToHW(View v) {
-		if (!v.isInEditMode()
-				&& Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-			setLayerType(View.LAYER_TYPE_HARDWARE, null);
+	/**
+	 * 设置渲染模式，可选值为{@link #RENDER_MODE_AUTO}、{@link #RENDER_MODE_HARDWARE}、
+	 * {@link #RENDER_MODE_HARDWARE_LAYER}和{@link #RENDER_MODE_SOFTWARE}。默认为{@link #RENDER_MODE_AUTO}。
+	 * <p>
+	 * 自动模式在画笔使用了当前系统版本的硬件加速不支持的特性时使用软件layer，否则不使用离屏layer。
+	 * 目前只有Android 9以下的阴影属于这种特性，扫描渐变着色器和颜色过滤器都可以硬件绘制。
+	 * 子类在onDraw中使用此类无法得知的特性时应当显式选择渲染模式。
+	 * <p>
+	 * layer类型只在渲染模式或上述特性改变时切换，播放动画不会再切换layer。
+	 * <p>
+	 * {@link #setDrawRecordingEnabled(boolean)}开启的录制只在硬件画布上起作用，
+	 * {@link #RENDER_MODE_SOFTWARE}和选择了软件layer的{@link #RENDER_MODE_AUTO}不录制。
+	 * 
+	 * @param renderMode
+	 *            渲染模式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的渲染模式
+	 * @attr ref cn.changwentao.lemon.R#PercentLemon_renderMode
+	 */
+	public void setRenderMode(int renderMode) {
+		if (renderMode < RENDER_MODE_AUTO || renderMode > RENDER_MODE_SOFTWARE) {
+			throw new IllegalArgumentException("无效的渲染模式：" + renderMode);
 		}
+		if (renderMode != mLayerController.getRenderMode()) {
+			mLayerController.setRenderMode(renderMode);
+			applyLayerType();
+		}
+	}
+
+	/**
+	 * 返回当前的渲染模式。
+	 * 
+	 * @return 渲染模式
+	 * @attr ref cn.changwentao.lemon.R#PercentLemon_renderMode
+	 */
+	public int getRenderMode() {
+		return mLayerController.getRenderMode();
+	}
+
+	/**
+	 * 返回此View的layer类型实际切换的次数，每次切换都会重新分配离屏缓冲。
+	 * 
+	 * @return layer类型切换次数
+	 */
+	public int getLayerTransitionCount() {
+		return mLayerController.getTransitionCount();
+	}
+
+	LemonLayerController getLayerController() {
+		return mLayerController;
+	}
+
+	private void applyLayerType() {
+		int transitions = mLayerController.getTransitionCount();
+		mLayerController.apply(mRenderer.requiresSoftwareLayer());
+		if (mRenderStats != null) {
+			mRenderStats.mLayerTransitionCount += mLayerController
+					.getTransitionCount() - transitions;
+		}
+	}
+
+	/**
+	 * 开启或关闭渲染统计，默认关闭。开启时创建新的统计对象，关闭时丢弃已有的统计数据。
+	 * 
+	 * @param enabled
+	 *            是否开启
+	 * @see #getRenderStats()
+	 */
+	public void setRenderStatsEnabled(boolean enabled) {
+		if (enabled) {
+			if (mRenderStats == null) {
+				mRenderStats = new LemonRenderStats();
+			}
+		} else {
+			mRenderStats = null;
+		}
+	}
+
+	/**
+	 * 返回实时更新的渲染统计数据，未开启统计时返回null。只能在UI线程中读取。
+	 * 
+	 * @return 渲染统计
+	 * @see #setRenderStatsEnabled(boolean)
+	 */
+	public LemonRenderStats getRenderStats() {
+		return mRenderStats;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import cn.changwentao.widget.core.LemonGeometry;
+
+/**
+ * PercentLemonDrawable以{@link Drawable}的形式绘制与{@link PercentLemon}相同的百分比圆环，
+ * 可以设置给ImageView、TextView的复合图片或列表项的背景，不需要创建View对象。
+ * <p>
+ * 百分比值可以通过{@link #setPercent(float)}设置，也可以通过{@link #setLevel(int)}设置：
+ * level的取值范围0到10000对应百分比0到100，因此可以直接使用按level播放的动画。
+ * <p>
+ * 圆环绘制在bounds中居中的正方形区域内。
+ */
+public class PercentLemonDrawable extends Drawable {
+
+	/** level的最大值，对应百分比100 */
+	private static final int MAX_LEVEL = 10000;
+
+	private final LemonRenderer mRenderer;
+
+	private int mHeartColor;
+	private int mHeartClickedColor;
+	private int mSkinStartColor;
+	private int mSkinEndColor;
+	private int mSkinDepth = PercentLemon.DEFAULT_SKIN_DEPTH;
+	private float mPercent;
+	private int mIntrinsicSize = -1;
+
+	private float mXCenter;
+	private float mYCenter;
+	private int mHeartRadius;
+	private final RectF mRingBounds = new RectF();
+
+	/**
+	 * 构建一个默认样式的{@link PercentLemonDrawable}对象，默认样式与{@link PercentLemon}相同。
+	 */
+	public PercentLemonDrawable() {
+		mHeartColor = PercentLemon.DEFAULT_HEART_COLOR_NORMAL;
+		mHeartClickedColor = PercentLemon.DEFAULT_HEART_COLOR_CLICKED;
+		mSkinStartColor = PercentLemon.DEFAULT_SKIN_START_COLOR;
+		mSkinEndColor = PercentLemon.DEFAULT_SKIN_END_COLOR;
+		mRenderer = new LemonRenderer(PercentLemon.DEFAULT_TEXT_COLOR,
+				mHeartColor, mHeartClickedColor, mSkinStartColor,
+				mSkinEndColor, false);
+	}
+
+	@Override
+	public void draw(Canvas canvas) {
+		if (mHeartRadius <= 0) {
+			return;
+		}
+		mRenderer.draw(canvas, mXCenter, mYCenter, mHeartRadius, mRingBounds,
+				mPercent, mHeartColor);
+	}
+
+	@Override
+	protected void onBoundsChange(Rect bounds) {
+		updateGeometry(bounds);
+	}
+
+	private void updateGeometry(Rect bounds) {
+		// 与PercentLemon使用同一套几何计算，坐标相对于bounds左上角，再平移到bounds中
+		LemonGeometry geometry = LemonGeometry.compute(bounds.width(),
+				bounds.height(), 0, 0, 0, 0, mSkinDepth);
+		mXCenter = bounds.left + geometry.xCenter;
+		mYCenter = bounds.top + geometry.yCenter;
+		mHeartRadius = geometry.heartRadius;
+		mRenderer.setSkinRawDepth(geometry.skinRawDepth);
+		mRingBounds.set(geometry.boundsLeft, geometry.boundsTop,
+				geometry.boundsRight, geometry.boundsBottom);
+		mRingBounds.offset(bounds.left, bounds.top);
+	}
+
+	@Override
+	protected boolean onLevelChange(int level) {
+		float percent = level * 100f / MAX_LEVEL;
+		if (Float.compare(percent, mPercent) != 0) {
+			mPercent = percent;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 设置百分比值。
+	 *
+	 * @param percent
+	 *            百分比值0到100之间
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数值不在0到100之间
+	 */
+	public void setPercent(float percent) {
+		if (Float.compare(percent, 100) > 0 || Float.compare(percent, 0) < 0) {
+			throw new IllegalArgumentException("百分比值必须在0到100之间");
+		}
+		if (Float.compare(percent, mPercent) != 0) {
+			mPercent = percent;
+			invalidateSelf();
+		}
+	}
+
+	/**
+	 * 返回当前显示的百分比值。
+	 *
+	 * @return 百分比
+	 */
+	public float getPercent() {
+		return mPercent;
+	}
+
+	/**
+	 * 设置中心百分比文字颜色值。
+	 *
+	 * @param color
+	 *            文字颜色
+	 */
+	public void setTextColor(int color) {
+		if (color != mRenderer.getTextColor()) {
+			mRenderer.setTextColor(color);
+			invalidateSelf();
+		}
+	}
+
+	/**
+	 * 设置中心圆的颜色值
+	 *
+	 * @param heartColor
+	 *            中心圆颜色
+	 */
+	public void setHeartColor(int heartColor) {
+		if (heartColor != mHeartColor) {
+			mHeartColor = heartColor;
+			mRenderer.setHeartColors(mHeartColor, mHeartClickedColor);
+			invalidateSelf();
+		}
+	}
+
+	/**
+	 * 设置外围百分比圆环颜色过渡范围，起始颜色为百分值为0时的颜色，结束颜色为百分值为100时的颜色。
+	 *
+	 * @param startColor
+	 *            起始颜色
+	 * @param endColor
+	 *            结束颜色
+	 */
+	public void setSkinColor(int startColor, int endColor) {
+		if (startColor != mSkinStartColor || endColor != mSkinEndColor) {
+			mSkinStartColor = startColor;
+			mSkinEndColor = endColor;
+			mRenderer.setSkinColors(startColor, endColor);
+			invalidateSelf();
+		}
+	}
+
+	/**
+	 * 设置外围百分比圆环的宽度，数值在1到50之间，为外围圆环在整个半径中宽度相对于100所占比重。
+	 *
+	 * @param skinDepth
+	 *            外围圆环像宽度比重
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数值不在1到50之间
+	 */
+	public void setSkinDepth(int skinDepth) {
+		if (skinDepth != mSkinDepth) {
+			if (skinDepth > 50 || skinDepth < 1) {
+				throw new IllegalArgumentException("宽度比重必须在1到50之间");
+			}
+			mSkinDepth = skinDepth;
+			updateGeometry(getBounds());
+			invalidateSelf();
+		}
+	}
+
+	/**
+	 * 设置固有尺寸，用于ImageView和TextView复合图片等按固有尺寸布局的场合。默认为-1，即没有固有尺寸。
+	 *
+	 * @param size
+	 *            固有宽度和高度，单位为像素
+	 */
+	public void setIntrinsicSize(int size) {
+		mIntrinsicSize = size;
+	}
+
+	@Override
+	public int getIntrinsicWidth() {
+		return mIntrinsicSize;
+	}
+
+	@Override
+	public int getIntrinsicHeight() {
+		return mIntrinsicSize;
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		if (alpha != mRenderer.getAlpha()) {
+			mRenderer.setAlpha(alpha);
+			invalidateSelf();
+		}
+	}
+
+	@Override
+	public int getAlpha() {
+		return mRenderer.getAlpha();
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter cf) {
+		mRenderer.setColorFilter(cf);
+		invalidateSelf();
+	}
+
+	@Override
+	public int getOpacity() {
+		return PixelFormat.TRANSLUCENT;
+	}
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import cn.changwentao.widget.core.LemonGeometry;
+
+/**
+ * PercentLemonGrid在一个View中以固定网格绘制大量百分比圆环。
+ * <p>
+ * 与使用多个{@link PercentLemon}相比，所有圆环共用一次测量、布局和绘制过程，共用同一套画笔和文本排版缓存，
+ * 各圆环的数值保存在基本类型数组中。修改单个圆环的数值时只重绘该圆环所在的格子。
+ * <p>
+ * 圆环的样式使用与{@link PercentLemon}相同的xml属性，所有圆环样式相同。
+ *
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_heartColor
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_heartClickedColor
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_skinStartColor
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_skinEndColor
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_skinDepth
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_centerTextColor
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_textMode
+ * @attr ref cn.changwentao.lemon.R.styleable#PercentLemon_skinMode
+ */
+public class PercentLemonGrid extends View {
+
+	/** 每个格子默认的最小边长，与{@link PercentLemon}的默认尺寸相同 */
+	private static final int DEFAULT_CELL_SIZE = 100;
+
+	private static final float[] EMPTY_PERCENTS = new float[0];
+
+	/** 所有圆环共用的绘制逻辑 */
+	private final LemonRenderer mRenderer;
+
+	private final int mHeartColor;
+	private final int mHeartClickedColor;
+	private final int mSkinDepth;
+
+	private float[] mPercents = EMPTY_PERCENTS;
+	private int mColumnCount = 1;
+
+	/** 格子边长，以及格子内的圆环几何信息，坐标相对于格子左上角 */
+	private int mCellSize;
+	private LemonGeometry mCellGeometry;
+	private final RectF mCellBounds = new RectF();
+
+	private final Rect mClipBounds = new Rect();
+
+	/** 当前按下的中心圆所在的圆环序号，没有按下时为-1 */
+	private int mPressedIndex = -1;
+
+	private OnRingHeartClickListener mOnRingHeartClickListener;
+
+	/**
+	 * 构建一个默认样式的{@link PercentLemonGrid}对象。
+	 *
+	 * @param context
+	 *            Context上下文对象
+	 */
+	public PercentLemonGrid(Context context) {
+		this(context, null);
+	}
+
+	/**
+	 * 根据xml文件提供的属性值构建一个{@link PercentLemonGrid}对象。
+	 *
+	 * @param context
+	 *            Context上下文对象
+	 */
+	public PercentLemonGrid(Context context, AttributeSet attrs) {
+		super(context, attrs);
+
+		LemonStyle style = LemonStyle.obtain(context, attrs);
+		mHeartColor = style.getHeartColor();
+		mHeartClickedColor = style.getHeartClickedColor();
+		mSkinDepth = style.getSkinDepth();
+
+		mRenderer = new LemonRenderer(style.getTextColor(), mHeartColor,
+				mHeartClickedColor, style.getSkinStartColor(),
+				style.getSkinEndColor(), true);
+		mRenderer.getTextLayout().setGlyphAtlasEnabled(
+				style.getTextMode() == PercentLemon.TEXT_MODE_GLYPH_ATLAS);
+		mRenderer.setSweepGradientEnabled(
+				style.getSkinMode() == PercentLemon.SKIN_MODE_SWEEP_GRADIENT);
+	}
+
+	/**
+	 * 中心圆被点击时回调的接口
+	 */
+	public interface OnRingHeartClickListener {
+		/**
+		 * 某个圆环的中心圆被点击时被调用
+		 *
+		 * @param grid
+		 *            PercentLemonGrid对象
+		 * @param index
+		 *            被点击的圆环序号
+		 */
+		void onRingHeartClick(PercentLemonGrid grid, int index);
+	}
+
+	/**
+	 * 注册一个当圆环中心圆被点击时调用的回调
+	 *
+	 * @param l
+	 *            设定的回调
+	 */
+	public void setOnRingHeartClickListener(OnRingHeartClickListener l) {
+		mOnRingHeartClickListener = l;
+	}
+
+	/**
+	 * 设置圆环的数量。已有圆环的数值保持不变，新增圆环的数值为0。
+	 *
+	 * @param count
+	 *            圆环数量
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数值小于0
+	 */
+	public void setRingCount(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("圆环数量不能小于0");
+		}
+		if (count != mPercents.length) {
+			float[] percents = new float[count];
+			System.arraycopy(mPercents, 0, percents, 0,
+					Math.min(count, mPercents.length));
+			mPercents = percents;
+			mPressedIndex = -1;
+			// 尺寸固定时不会触发onSizeChanged，行数变化后需要立即重新计算格子
+			updateCellGeometry();
+			requestLayout();
+			invalidate();
+		}
+	}
+
+	/**
+	 * 返回圆环的数量。
+	 */
+	public int getRingCount() {
+		return mPercents.length;
+	}
+
+	/**
+	 * 设置网格的列数，默认为1。
+	 *
+	 * @param columnCount
+	 *            列数
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数值小于1
+	 */
+	public void setColumnCount(int columnCount) {
+		if (columnCount < 1) {
+			throw new IllegalArgumentException("列数不能小于1");
+		}
+		if (columnCount != mColumnCount) {
+			mColumnCount = columnCount;
+			updateCellGeometry();
+			requestLayout();
+			invalidate();
+		}
+	}
+
+	/**
+	 * 返回网格的列数。
+	 */
+	public int getColumnCount() {
+		return mColumnCount;
+	}
+
+	/**
+	 * 设置单个圆环的百分比值，只重绘该圆环所在的格子。
+	 *
+	 * @param index
+	 *            圆环序号
+	 * @param percent
+	 *            百分比值0到100之间
+	 * @throws IndexOutOfBoundsException
+	 *             如果圆环序号超出范围
+	 * @throws IllegalArgumentException
+	 *             如果百分比值不在0到100之间
+	 */
+	public void setPercent(int index, float percent) {
+		checkIndex(index);
+		checkPercent(percent);
+		if (Float.compare(percent, mPercents[index]) != 0) {
+			mPercents[index] = percent;
+			invalidateCell(index);
+		}
+	}
+
+	/**
+	 * 一次设置多个圆环的百分比值，从序号0开始依次设置，只重绘数值改变的格子。
+	 *
+	 * @param percents
+	 *            百分比值数组，长度不能超过圆环数量
+	 * @throws IllegalArgumentException
+	 *             如果数组长度超过圆环数量，或者某个百分比值不在0到100之间
+	 */
+	public void setPercents(float[] percents) {
+		if (percents.length > mPercents.length) {
+			throw new IllegalArgumentException("百分比值的数量" + percents.length
+					+ "超过圆环数量" + mPercents.length);
+		}
+		for (int i = 0; i < percents.length; i++) {
+			setPercent(i, percents[i]);
+		}
+	}
+
+	/**
+	 * 返回单个圆环的百分比值。
+	 *
+	 * @param index
+	 *            圆环序号
+	 * @return 百分比
+	 * @throws IndexOutOfBoundsException
+	 *             如果圆环序号超出范围
+	 */
+	public float getPercent(int index) {
+		checkIndex(index);
+		return mPercents[index];
+	}
+
+	/**
+	 * 设置中心文本的绘制方式，可选值为{@link PercentLemon#TEXT_MODE_SHAPED}和
+	 * {@link PercentLemon#TEXT_MODE_GLYPH_ATLAS}。默认为{@link PercentLemon#TEXT_MODE_SHAPED}。
+	 *
+	 * @param textMode
+	 *            文本模式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的文本模式
+	 */
+	public void setTextMode(int textMode) {
+		if (textMode != PercentLemon.TEXT_MODE_SHAPED
+				&& textMode != PercentLemon.TEXT_MODE_GLYPH_ATLAS) {
+			throw new IllegalArgumentException("无效的文本模式：" + textMode);
+		}
+		boolean glyphAtlas = textMode == PercentLemon.TEXT_MODE_GLYPH_ATLAS;
+		if (glyphAtlas != mRenderer.getTextLayout().isGlyphAtlasEnabled()) {
+			mRenderer.setGlyphAtlasEnabled(glyphAtlas);
+			invalidate();
+		}
+	}
+
+	/**
+	 * 设置外圆环的着色方式，可选值为{@link PercentLemon#SKIN_MODE_SOLID}和
+	 * {@link PercentLemon#SKIN_MODE_SWEEP_GRADIENT}。默认为{@link PercentLemon#SKIN_MODE_SOLID}。
+	 * 所有圆环共用同一个扫描渐变着色器。
+	 *
+	 * @param skinMode
+	 *            着色方式
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数不是有效的着色方式
+	 */
+	public void setSkinMode(int skinMode) {
+		if (skinMode != PercentLemon.SKIN_MODE_SOLID
+				&& skinMode != PercentLemon.SKIN_MODE_SWEEP_GRADIENT) {
+			throw new IllegalArgumentException("无效的着色方式：" + skinMode);
+		}
+		mRenderer.setSweepGradientEnabled(
+				skinMode == PercentLemon.SKIN_MODE_SWEEP_GRADIENT);
+		invalidate();
+	}
+
+	/**
+	 * 设置是否使用共享的静态图层缓存，默认不使用。开启后中心圆预先绘制到Bitmap中，
+	 * 所有圆环以及相同样式的PercentLemon共用同一张Bitmap，每帧绘制这张Bitmap、百分比圆弧、剩余的灰色轨道和文字。
+	 * 处于按下状态的圆环和设置了颜色过滤器时仍然直接绘制。
+	 *
+	 * @param enabled
+	 *            是否使用缓存
+	 * @see LemonLayerCache
+	 */
+	public void setLayerCacheEnabled(boolean enabled) {
+		if (enabled != mRenderer.isLayerCacheEnabled()) {
+			mRenderer.setLayerCache(enabled ? LemonLayerCache
+					.getInstance(getContext()) : null);
+			invalidate();
+		}
+	}
+
+	/**
+	 * 返回是否使用共享的静态图层缓存。
+	 *
+	 * @return 是否使用缓存
+	 */
+	public boolean isLayerCacheEnabled() {
+		return mRenderer.isLayerCacheEnabled();
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= mPercents.length) {
+			throw new IndexOutOfBoundsException("圆环序号超出范围：" + index);
+		}
+	}
+
+	private static void checkPercent(float percent) {
+		if (Float.compare(percent, 100) > 0 || Float.compare(percent, 0) < 0) {
+			throw new IllegalArgumentException("百分比值必须在0到100之间");
+		}
+	}
+
+	private int getRowCount() {
+		return (mPercents.length + mColumnCount - 1) / mColumnCount;
+	}
+
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+		int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+		int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+		int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+		int horizontalPadding = getPaddingLeft() + getPaddingRight();
+		int verticalPadding = getPaddingTop() + getPaddingBottom();
+
+		int width;
+		if (widthMode == MeasureSpec.UNSPECIFIED) {
+			width = horizontalPadding + mColumnCount * DEFAULT_CELL_SIZE;
+		} else {
+			width = widthSize;
+		}
+
+		int cellSize = Math.max(0, (width - horizontalPadding) / mColumnCount);
+		int height = verticalPadding + getRowCount() * cellSize;
+		if (heightMode == MeasureSpec.EXACTLY) {
+			height = heightSize;
+		} else if (heightMode == MeasureSpec.AT_MOST) {
+			height = Math.min(height, heightSize);
+		}
+		setMeasuredDimension(width, height);
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		updateCellGeometry();
+	}
+
+	@Override
+	public void setPadding(int left, int top, int right, int bottom) {
+		super.setPadding(left, top, right, bottom);
+		updateCellGeometry();
+	}
+
+	@SuppressLint("NewApi")
+	@Override
+	public void setPaddingRelative(int start, int top, int end, int bottom) {
+		super.setPaddingRelative(start, top, end, bottom);
+		updateCellGeometry();
+	}
+
+	// 根据当前尺寸、内边距、列数和行数计算格子边长和格子内的圆环几何信息
+	private void updateCellGeometry() {
+		if (mRenderer == null) {
+			// 父类构造函数中设置内边距时尚未初始化
+			return;
+		}
+		int cellSize = (getWidth() - getPaddingLeft() - getPaddingRight())
+				/ mColumnCount;
+		int rowCount = getRowCount();
+		if (rowCount > 0) {
+			cellSize = Math.min(cellSize, (getHeight() - getPaddingTop()
+					- getPaddingBottom())
+					/ rowCount);
+		}
+		mCellSize = Math.max(0, cellSize);
+
+		// 每个格子与单个PercentLemon使用同一套几何计算和点击判定
+		LemonGeometry geometry = LemonGeometry.compute(mCellSize, mCellSize,
+				0, 0, 0, 0, mSkinDepth);
+		mCellGeometry = geometry;
+		mRenderer.setSkinRawDepth(geometry.skinRawDepth);
+		mCellBounds.set(geometry.boundsLeft, geometry.boundsTop,
+				geometry.boundsRight, geometry.boundsBottom);
+	}
+
+	private int getCellLeft(int index) {
+		return getPaddingLeft() + (index % mColumnCount) * mCellSize;
+	}
+
+	private int getCellTop(int index) {
+		return getPaddingTop() + (index / mColumnCount) * mCellSize;
+	}
+
+	private void invalidateCell(int index) {
+		int left = getCellLeft(index);
+		int top = getCellTop(index);
+		invalidate(left, top, left + mCellSize, top + mCellSize);
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		super.onDraw(canvas);
+		if (mCellSize <= 0) {
+			return;
+		}
+		if (!canvas.getClipBounds(mClipBounds)) {
+			return;
+		}
+
+		float[] percents = mPercents;
+		for (int i = 0; i < percents.length; i++) {
+			int left = getCellLeft(i);
+			int top = getCellTop(i);
+			if (left >= mClipBounds.right || top >= mClipBounds.bottom
+					|| left + mCellSize <= mClipBounds.left
+					|| top + mCellSize <= mClipBounds.top) {
+				continue;
+			}
+			int heartColor = i == mPressedIndex ? mHeartClickedColor
+					: mHeartColor;
+			int saveCount = canvas.save();
+			canvas.translate(left, top);
+			mRenderer.draw(canvas, mCellGeometry.xCenter,
+					mCellGeometry.yCenter, mCellGeometry.heartRadius,
+					mCellBounds, percents[i], heartColor);
+			canvas.restoreToCount(saveCount);
+		}
+	}
+
+	// 返回点击点所在中心圆对应的圆环序号，如果没有落在任何中心圆内则返回-1
+	private int ringHeartAt(float x, float y) {
+		if (mCellSize <= 0) {
+			return -1;
+		}
+		float localX = x - getPaddingLeft();
+		float localY = y - getPaddingTop();
+		if (localX < 0 || localY < 0) {
+			return -1;
+		}
+		int column = (int) (localX / mCellSize);
+		int row = (int) (localY / mCellSize);
+		if (column >= mColumnCount) {
+			return -1;
+		}
+		int index = row * mColumnCount + column;
+		if (index >= mPercents.length) {
+			return -1;
+		}
+		if (mCellGeometry.pointInHeart(localX - column * mCellSize, localY
+				- row * mCellSize)) {
+			return index;
+		}
+		return -1;
+	}
+
+	@SuppressLint("ClickableViewAccessibility")
+	@Override
+	public boolean onTouchEvent(MotionEvent event) {
+		if (mOnRingHeartClickListener == null) {
+			return super.onTouchEvent(event);
+		}
+		float x = event.getX();
+		float y = event.getY();
+		switch (event.getAction()) {
+		case MotionEvent.ACTION_DOWN:
+			int index = ringHeartAt(x, y);
+			if (index >= 0) {
+				setPressedIndex(index);
+				return true;
+			}
+			break;
+		case MotionEvent.ACTION_MOVE:
+			if (mPressedIndex >= 0) {
+				if (ringHeartAt(x, y) != mPressedIndex) {
+					setPressedIndex(-1);
+				}
+				return true;
+			}
+			break;
+		case MotionEvent.ACTION_UP:
+			if (mPressedIndex >= 0) {
+				int pressedIndex = mPressedIndex;
+				setPressedIndex(-1);
+				if (ringHeartAt(x, y) == pressedIndex) {
+					mOnRingHeartClickListener.onRingHeartClick(this,
+							pressedIndex);
+				}
+				return true;
+			}
+			break;
+		case MotionEvent.ACTION_CANCEL:
+			if (mPressedIndex >= 0) {
+				setPressedIndex(-1);
+				return true;
+			}
+			break;
+		}
+		return super.onTouchEvent(event);
+	}
+
+	private void setPressedIndex(int index) {
+		if (index != mPressedIndex) {
+			if (mPressedIndex >= 0) {
+				invalidateCell(mPressedIndex);
+			}
+			mPressedIndex = index;
+			if (index >= 0) {
+				invalidateCell(index);
+			}
+		}
+	}
+}
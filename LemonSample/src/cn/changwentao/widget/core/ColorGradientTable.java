@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 颜色渐变查找表，预先计算由起始颜色渐变到结束颜色过程中各个百分比对应的颜色。
+ * <p>
+ * 只在颜色、分辨率或插值方式改变时重新生成，每帧取色只需一次数组读取。起止颜色、分辨率和插值方式都相同的表在所有实例间共享。
+ */
+public final class ColorGradientTable {
+
+	/** 插值方式：在sRGB空间中逐通道线性插值 */
+	public static final int INTERPOLATION_RGB = 0;
+
+	/** 插值方式：在线性RGB空间中插值 */
+	public static final int INTERPOLATION_LINEAR_RGB = 1;
+
+	/** 插值方式：在OKLab感知均匀颜色空间中插值 */
+	public static final int INTERPOLATION_OKLAB = 2;
+
+	/** 默认的查找表分辨率 */
+	public static final int DEFAULT_RESOLUTION = 1024;
+
+	/** 共享查找表的最大数量 */
+	private static final int MAX_SHARED_TABLES = 32;
+
+	private static final Map<Key, int[]> sTables = new LinkedHashMap<Key, int[]>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+			return size() > MAX_SHARED_TABLES;
+		}
+	};
+
+	private int mStartColor;
+	private int mEndColor;
+	private int mResolution = DEFAULT_RESOLUTION;
+	private int mInterpolation = INTERPOLATION_RGB;
+	private int[] mColors;
+
+	public ColorGradientTable(int startColor, int endColor) {
+		mStartColor = startColor;
+		mEndColor = endColor;
+		rebuild();
+	}
+
+	/**
+	 * 设置起始和结束颜色，颜色改变时重新生成查找表。
+	 */
+	public void setColors(int startColor, int endColor) {
+		if (startColor != mStartColor || endColor != mEndColor) {
+			mStartColor = startColor;
+			mEndColor = endColor;
+			rebuild();
+		}
+	}
+
+	/**
+	 * 设置查找表的分辨率，即0到100之间划分的颜色数量。
+	 *
+	 * @param resolution
+	 *            查找表分辨率，不小于2
+	 * @throws IllegalArgumentException
+	 *             如果传递的参数值小于2
+	 */
+	public void setResolution(int resolution) {
+		if (resolution < 2) {
+			throw new IllegalArgumentException("查找表分辨率不能小于2");
+		}
+		if (resolution != mResolution) {
+			mResolution = resolution;
+			rebuild();
+		}
+	}
+
+	/**
+	 * 设置颜色插值方式。
+	 */
+	public void setInterpolation(int interpolation) {
+		if (interpolation != mInterpolation) {
+			mInterpolation = interpolation;
+			rebuild();
+		}
+	}
+
+	/**
+	 * 返回百分比值对应的颜色。
+	 *
+	 * @param percent
+	 *            百分比值，超出0到100的部分会被截断
+	 */
+	public int getColor(float percent) {
+		int[] colors = mColors;
+		int index = (int) (percent * (colors.length - 1) / 100 + 0.5f);
+		if (index < 0) {
+			return colors[0];
+		}
+		if (index >= colors.length) {
+			return colors[colors.length - 1];
+		}
+		return colors[index];
+	}
+
+	private void rebuild() {
+		Key key = new Key(mStartColor, mEndColor, mResolution, mInterpolation);
+		synchronized (sTables) {
+			int[] colors = sTables.get(key);
+			if (colors == null) {
+				colors = buildTable(mStartColor, mEndColor, mResolution,
+						mInterpolation);
+				sTables.put(key, colors);
+			}
+			mColors = colors;
+		}
+	}
+
+	private static int[] buildTable(int startColor, int endColor,
+			int resolution, int interpolation) {
+		int[] colors = new int[resolution];
+		int last = resolution - 1;
+		for (int i = 0; i < resolution; i++) {
+			float percent = i * 100f / last;
+			switch (interpolation) {
+			case INTERPOLATION_LINEAR_RGB:
+				colors[i] = interpolateLinearRgb(startColor, endColor, percent);
+				break;
+			case INTERPOLATION_OKLAB:
+				colors[i] = interpolateOklab(startColor, endColor, percent);
+				break;
+			default:
+				colors[i] = interpolateRgb(startColor, endColor, percent);
+				break;
+			}
+		}
+		return colors;
+	}
+
+	// 根据给定的起始、结束颜色和百分比值计算当由起始颜色渐变到结束颜色经历所给百分比值时刻当前颜色
+	public static int interpolateRgb(int startColor, int endColor, float percent) {
+		int startA = (startColor >> 24) & 0xff;
+		int startR = (startColor >> 16) & 0xff;
+		int startG = (startColor >> 8) & 0xff;
+		int startB = startColor & 0xff;
+
+		int endA = (endColor >> 24) & 0xff;
+		int endR = (endColor >> 16) & 0xff;
+		int endG = (endColor >> 8) & 0xff;
+		int endB = endColor & 0xff;
+
+		return (int) ((startA + (int) (percent * (endA - startA) / 100)) << 24)
+				| (int) ((startR + (int) (percent * (endR - startR) / 100)) << 16)
+				| (int) ((startG + (int) (percent * (endG - startG) / 100)) << 8)
+				| (int) ((startB + (int) (percent * (endB - startB) / 100)));
+	}
+
+	// 在线性RGB空间中插值，避免sRGB空间插值时中间颜色偏暗
+	public static int interpolateLinearRgb(int startColor, int endColor,
+			float percent) {
+		double t = percent / 100.0;
+		double r = lerp(toLinear((startColor >> 16) & 0xff),
+				toLinear((endColor >> 16) & 0xff), t);
+		double g = lerp(toLinear((startColor >> 8) & 0xff),
+				toLinear((endColor >> 8) & 0xff), t);
+		double b = lerp(toLinear(startColor & 0xff), toLinear(endColor & 0xff),
+				t);
+		return pack(interpolateAlpha(startColor, endColor, t), toSrgb(r),
+				toSrgb(g), toSrgb(b));
+	}
+
+	// 在OKLab感知均匀颜色空间中插值
+	public static int interpolateOklab(int startColor, int endColor, float percent) {
+		double t = percent / 100.0;
+		double[] start = toOklab(startColor);
+		double[] end = toOklab(endColor);
+		double l = lerp(start[0], end[0], t);
+		double a = lerp(start[1], end[1], t);
+		double b = lerp(start[2], end[2], t);
+
+		double l_ = l + 0.3963377774 * a + 0.2158037573 * b;
+		double m_ = l - 0.1055613458 * a - 0.0638541728 * b;
+		double s_ = l - 0.0894841775 * a - 1.2914855480 * b;
+		l_ = l_ * l_ * l_;
+		m_ = m_ * m_ * m_;
+		s_ = s_ * s_ * s_;
+
+		double r = 4.0767416621 * l_ - 3.3077115913 * m_ + 0.2309699292 * s_;
+		double g = -1.2684380046 * l_ + 2.6097574011 * m_ - 0.3413193965 * s_;
+		double bl = -0.0041960863 * l_ - 0.7034186147 * m_ + 1.7076147010 * s_;
+		return pack(interpolateAlpha(startColor, endColor, t), toSrgb(r),
+				toSrgb(g), toSrgb(bl));
+	}
+
+	private static double[] toOklab(int color) {
+		double r = toLinear((color >> 16) & 0xff);
+		double g = toLinear((color >> 8) & 0xff);
+		double b = toLinear(color & 0xff);
+
+		double l = Math.cbrt(0.4122214708 * r + 0.5363325363 * g + 0.0514459929
+				* b);
+		double m = Math.cbrt(0.2119034982 * r + 0.6806995451 * g + 0.1073969566
+				* b);
+		double s = Math.cbrt(0.0883024619 * r + 0.2817188376 * g + 0.6299787005
+				* b);
+		return new double[] {
+				0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s,
+				1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s,
+				0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s };
+	}
+
+	private static int interpolateAlpha(int startColor, int endColor, double t) {
+		return (int) Math.round(lerp((startColor >>> 24), (endColor >>> 24), t));
+	}
+
+	private static double lerp(double start, double end, double t) {
+		return start + (end - start) * t;
+	}
+
+	private static double toLinear(int channel) {
+		double c = channel / 255.0;
+		return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+	}
+
+	private static int toSrgb(double linear) {
+		double c = linear <= 0.0031308 ? linear * 12.92 : 1.055 * Math.pow(
+				linear, 1 / 2.4) - 0.055;
+		int channel = (int) Math.round(c * 255);
+		return channel < 0 ? 0 : (channel > 255 ? 255 : channel);
+	}
+
+	private static int pack(int a, int r, int g, int b) {
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	private static final class Key {
+		final int startColor;
+		final int endColor;
+		final int resolution;
+		final int interpolation;
+
+		Key(int startColor, int endColor, int resolution, int interpolation) {
+			this.startColor = startColor;
+			this.endColor = endColor;
+			this.resolution = resolution;
+			this.interpolation = interpolation;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return startColor == k.startColor && endColor == k.endColor
+					&& resolution == k.resolution
+					&& interpolation == k.interpolation;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = startColor;
+			h = 31 * h + endColor;
+			h = 31 * h + resolution;
+			return 31 * h + interpolation;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+/**
+ * 圆环的几何信息，由View尺寸、内边距和外围圆环宽度比重计算得到，创建后不可修改。
+ */
+public final class LemonGeometry {
+
+	/** 圆心横坐标 */
+	public final int xCenter;
+
+	/** 圆心纵坐标 */
+	public final int yCenter;
+
+	/** 整个圆环的外半径 */
+	public final int radius;
+
+	/** 外围圆环的像素宽度 */
+	public final int skinRawDepth;
+
+	/** 中心圆半径 */
+	public final int heartRadius;
+
+	/** 外围圆环线条中心所在圆的外接矩形 */
+	public final float boundsLeft;
+	public final float boundsTop;
+	public final float boundsRight;
+	public final float boundsBottom;
+
+	/** 点击判定使用的中心圆半径 */
+	public final float hitRadius;
+
+	/** 点击判定使用的中心圆圆心，即外围圆环所在矩形的中心 */
+	private final float mHitCenterX;
+	private final float mHitCenterY;
+	private final float mHitRadiusSquared;
+
+	private LemonGeometry(int xCenter, int yCenter, int radius,
+			int skinRawDepth) {
+		this.xCenter = xCenter;
+		this.yCenter = yCenter;
+		this.radius = radius;
+		this.skinRawDepth = skinRawDepth;
+		this.heartRadius = radius - skinRawDepth;
+		this.boundsLeft = xCenter - radius + skinRawDepth / 2;
+		this.boundsTop = yCenter - radius + skinRawDepth / 2;
+		this.boundsRight = xCenter + radius - skinRawDepth / 2;
+		this.boundsBottom = yCenter + radius - skinRawDepth / 2;
+		this.hitRadius = Math.min(boundsRight - boundsLeft - skinRawDepth,
+				boundsBottom - boundsTop - skinRawDepth) / 2;
+		mHitCenterX = (boundsLeft + boundsRight) / 2;
+		mHitCenterY = (boundsTop + boundsBottom) / 2;
+		mHitRadiusSquared = hitRadius * hitRadius;
+	}
+
+	/**
+	 * 计算圆环的几何信息。
+	 *
+	 * @param width
+	 *            View宽度
+	 * @param height
+	 *            View高度
+	 * @param skinDepth
+	 *            外围圆环宽度在整个半径中所占份额（共100份）
+	 */
+	public static LemonGeometry compute(int width, int height,
+			int paddingLeft, int paddingTop, int paddingRight,
+			int paddingBottom, int skinDepth) {
+		int xCenter = (width + paddingLeft - paddingRight) / 2;
+		int yCenter = (height + paddingTop - paddingBottom) / 2;
+		int radius = Math.min(xCenter - paddingLeft, yCenter - paddingTop);
+		int skinRawDepth = (int) (skinDepth / 100.0 * radius);
+		return new LemonGeometry(xCenter, yCenter, radius, skinRawDepth);
+	}
+
+	/**
+	 * 判断点是否落在中心圆内，比较距离的平方，不开方。
+	 */
+	public boolean pointInHeart(float x, float y) {
+		if (hitRadius <= 0) {
+			return false;
+		}
+		float xx = x - mHitCenterX;
+		float yy = y - mHitCenterY;
+		return xx * xx + yy * yy < mHitRadiusSquared;
+	}
+}
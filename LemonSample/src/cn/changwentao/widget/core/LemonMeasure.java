@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+/**
+ * PercentLemon的测量规则。
+ * <p>
+ * 测量规格的编码与android.view.View.MeasureSpec相同：高2位为模式，低30位为尺寸。
+ * 一边为EXACTLY而另一边不确定时，不确定的一边取与确定一边相同的内容尺寸，使圆环保持为正方形。
+ */
+public final class LemonMeasure {
+	private static final int MODE_SHIFT = 30;
+	private static final int MODE_MASK = 0x3 << MODE_SHIFT;
+
+	/** 与MeasureSpec.UNSPECIFIED相同 */
+	public static final int UNSPECIFIED = 0 << MODE_SHIFT;
+
+	/** 与MeasureSpec.EXACTLY相同 */
+	public static final int EXACTLY = 1 << MODE_SHIFT;
+
+	/** 与MeasureSpec.AT_MOST相同 */
+	public static final int AT_MOST = 2 << MODE_SHIFT;
+
+	private LemonMeasure() {
+	}
+
+	/**
+	 * 返回测量规格中的模式。
+	 */
+	public static int getMode(int measureSpec) {
+		return measureSpec & MODE_MASK;
+	}
+
+	/**
+	 * 返回测量规格中的尺寸。
+	 */
+	public static int getSize(int measureSpec) {
+		return measureSpec & ~MODE_MASK;
+	}
+
+	/**
+	 * 计算PercentLemon的宽度应该为多少像素
+	 *
+	 * @param width
+	 *            宽度测量规格
+	 * @param height
+	 *            高度测量规格
+	 * @param minimumWidth
+	 *            两边都不确定时使用的最小内容宽度
+	 * @return 宽度
+	 */
+	public static int measureWidth(int width, int height, int paddingLeft,
+			int paddingTop, int paddingRight, int paddingBottom,
+			int minimumWidth) {
+		float result;
+		int widthMode = getMode(width);
+		int widthSize = getSize(width);
+
+		int heightMode = getMode(height);
+		int contentHeightSize = getSize(height) - paddingTop - paddingBottom;
+		if (contentHeightSize < 0) {
+			contentHeightSize = 0;
+		}
+
+		if (widthMode == EXACTLY) {
+			result = widthSize;
+		} else {
+			if (heightMode == EXACTLY) {
+				result = paddingLeft + paddingRight + contentHeightSize;
+			} else {
+				result = paddingLeft + paddingRight + minimumWidth;
+			}
+			if (widthMode == AT_MOST) {
+				result = Math.min(result, widthSize);
+			}
+		}
+		return (int) Math.ceil(result);
+	}
+
+	/**
+	 * 计算PercentLemon的高度应该为多少像素
+	 *
+	 * @param width
+	 *            宽度测量规格
+	 * @param height
+	 *            高度测量规格
+	 * @param minimumHeight
+	 *            两边都不确定时使用的最小内容高度
+	 * @return 高度
+	 */
+	public static int measureHeight(int width, int height, int paddingLeft,
+			int paddingTop, int paddingRight, int paddingBottom,
+			int minimumHeight) {
+		float result;
+		int heightMode = getMode(height);
+		int heightSize = getSize(height);
+
+		int widthMode = getMode(width);
+		int contentWidthSize = getSize(width) - paddingLeft - paddingRight;
+		if (contentWidthSize < 0) {
+			contentWidthSize = 0;
+		}
+
+		if (heightMode == EXACTLY) {
+			result = heightSize;
+		} else {
+			if (widthMode == EXACTLY) {
+				result = paddingTop + paddingBottom + contentWidthSize;
+			} else {
+				result = paddingTop + paddingBottom + minimumHeight;
+			}
+			if (heightMode == AT_MOST) {
+				result = Math.min(result, heightSize);
+			}
+		}
+		return (int) Math.ceil(result);
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+/**
+ * 将不规则、带噪声的进度采样转换为每帧连续变化的显示值。
+ * <p>
+ * 采样保存在固定容量的基本类型环形缓冲中，每次添加采样时对缓冲中的采样做最小二乘直线拟合得到速度。
+ * 每一帧将最新的采样按该速度外推到当前时刻作为目标值，外推时长不超过最近采样间隔的两倍，
+ * 再按平滑方式将显示值逐帧逼近目标值。整个过程不分配对象。
+ */
+public final class LemonProgressStream {
+
+	/** 平滑方式：指数移动平均，显示值每帧按固定时间常数逼近目标值 */
+	public static final int SMOOTHING_EMA = 0;
+
+	/** 平滑方式：临界阻尼弹簧，显示值带速度逼近目标值，不会越过目标值 */
+	public static final int SMOOTHING_CRITICALLY_DAMPED = 1;
+
+	/** 默认的平滑时间，单位毫秒 */
+	public static final long DEFAULT_SMOOTHING_TIME = 200;
+
+	/** 环形缓冲容量，即参与速度拟合的采样数量 */
+	private static final int CAPACITY = 8;
+
+	/** 显示值与目标值之差小于此值时认为已经静止 */
+	private static final float SETTLE_EPSILON = 0.01f;
+
+	private final float[] mValues = new float[CAPACITY];
+	private final long[] mTimes = new long[CAPACITY];
+	private int mHead;
+	private int mCount;
+
+	/** 采样拟合出的速度，每毫秒的变化量，只在添加采样时重新计算 */
+	private float mSlope;
+
+	private int mSmoothing = SMOOTHING_CRITICALLY_DAMPED;
+	private long mSmoothingTime = DEFAULT_SMOOTHING_TIME;
+
+	private float mValue;
+	private float mVelocity;
+	private long mLastFrameTime = -1;
+
+	/**
+	 * 清空采样，并将显示值设为给定值。
+	 */
+	public void reset(float value) {
+		mHead = 0;
+		mCount = 0;
+		mSlope = 0f;
+		mValue = value;
+		mVelocity = 0;
+		mLastFrameTime = -1;
+	}
+
+	/**
+	 * 添加一个采样。
+	 *
+	 * @param timeMillis
+	 *            采样时刻，与传给{@link #step(long, float, float)}的帧时间使用同一时钟
+	 * @param value
+	 *            采样值
+	 */
+	public void push(long timeMillis, float value) {
+		int index = (mHead + mCount) % CAPACITY;
+		if (mCount < CAPACITY) {
+			mCount++;
+		} else {
+			mHead = (mHead + 1) % CAPACITY;
+		}
+		mValues[index] = value;
+		mTimes[index] = timeMillis;
+		mSlope = mCount >= 2 ? fitSlope() : 0f;
+	}
+
+	public void setSmoothing(int smoothing) {
+		mSmoothing = smoothing;
+	}
+
+	public int getSmoothing() {
+		return mSmoothing;
+	}
+
+	public void setSmoothingTime(long smoothingTime) {
+		mSmoothingTime = smoothingTime;
+	}
+
+	public long getSmoothingTime() {
+		return mSmoothingTime;
+	}
+
+	/**
+	 * 返回当前显示值。
+	 */
+	public float getValue() {
+		return mValue;
+	}
+
+	/**
+	 * 推进到给定的帧时间。
+	 *
+	 * @param frameTimeMillis
+	 *            当前帧时间
+	 * @param min
+	 *            显示值下限
+	 * @param max
+	 *            显示值上限
+	 * @return 显示值是否仍在变化，返回false时不需要继续请求帧
+	 */
+	public boolean step(long frameTimeMillis, float min, float max) {
+		if (mCount == 0) {
+			return false;
+		}
+		long dt = mLastFrameTime < 0 ? 0 : frameTimeMillis - mLastFrameTime;
+		mLastFrameTime = frameTimeMillis;
+
+		int last = (mHead + mCount - 1) % CAPACITY;
+		float target = mValues[last];
+		boolean extrapolating = false;
+		if (mCount >= 2) {
+			int previous = (mHead + mCount - 2) % CAPACITY;
+			long horizon = 2 * (mTimes[last] - mTimes[previous]);
+			long ahead = frameTimeMillis - mTimes[last];
+			if (ahead > 0 && horizon > 0) {
+				extrapolating = ahead < horizon;
+				target += mSlope * Math.min(ahead, horizon);
+			}
+		}
+		target = Math.max(min, Math.min(max, target));
+
+		if (dt > 0) {
+			if (mSmoothingTime <= 0) {
+				mValue = target;
+				mVelocity = 0;
+			} else if (mSmoothing == SMOOTHING_EMA) {
+				float alpha = 1f - (float) Math.exp(-(double) dt
+						/ mSmoothingTime);
+				mValue += (target - mValue) * alpha;
+			} else {
+				smoothDamp(target, dt);
+			}
+		}
+		mValue = Math.max(min, Math.min(max, mValue));
+
+		if (!extrapolating && Math.abs(target - mValue) < SETTLE_EPSILON) {
+			mValue = target;
+			mVelocity = 0;
+			mLastFrameTime = -1;
+			return false;
+		}
+		return true;
+	}
+
+	// 临界阻尼弹簧的一步积分，使用指数函数的有理近似，步长较大时也保持稳定。
+	// 目标值移动或残留速度可能使显示值越过目标值，此时停在目标值上并清除速度
+	private void smoothDamp(float target, long dt) {
+		float omega = 2f / mSmoothingTime;
+		float x = omega * dt;
+		float exp = 1f / (1f + x + 0.48f * x * x + 0.235f * x * x * x);
+		float change = mValue - target;
+		float temp = (mVelocity + omega * change) * dt;
+		mVelocity = (mVelocity - omega * temp) * exp;
+		mValue = target + (change + temp) * exp;
+		if ((change < 0) != (mValue < target) && change != 0) {
+			mValue = target;
+			mVelocity = 0;
+		}
+	}
+
+	// 对缓冲中的采样做最小二乘直线拟合，返回每毫秒的变化量
+	private float fitSlope() {
+		long t0 = mTimes[mHead];
+		double sumT = 0;
+		double sumV = 0;
+		for (int i = 0; i < mCount; i++) {
+			int index = (mHead + i) % CAPACITY;
+			sumT += mTimes[index] - t0;
+			sumV += mValues[index];
+		}
+		double meanT = sumT / mCount;
+		double meanV = sumV / mCount;
+		double covariance = 0;
+		double variance = 0;
+		for (int i = 0; i < mCount; i++) {
+			int index = (mHead + i) % CAPACITY;
+			double t = mTimes[index] - t0 - meanT;
+			covariance += t * (mValues[index] - meanV);
+			variance += t * t;
+		}
+		if (variance == 0) {
+			return 0f;
+		}
+		return (float) (covariance / variance);
+	}
+}
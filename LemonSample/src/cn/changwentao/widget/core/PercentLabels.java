@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+/**
+ * 预先生成的百分比文本表，覆盖0.0到100.0之间保留一位小数的全部1001个取值。
+ * <p>
+ * 所有文本紧凑地存放在同一个char数组中，绘制时可以直接使用以char数组为参数的drawText方法，
+ * 每一帧都不需要再创建String对象。
+ */
+public final class PercentLabels {
+
+	/** 文本表中的条目数量，对应0.0到100.0 */
+	public static final int COUNT = 1001;
+
+	private static final char[] CHARS;
+	private static final int[] STARTS = new int[COUNT];
+	private static final byte[] LENGTHS = new byte[COUNT];
+
+	static {
+		StringBuilder sb = new StringBuilder(COUNT * 5);
+		for (int i = 0; i < COUNT; i++) {
+			STARTS[i] = sb.length();
+			sb.append(i / 10).append('.').append(i % 10);
+			LENGTHS[i] = (byte) (sb.length() - STARTS[i]);
+		}
+		CHARS = new char[sb.length()];
+		sb.getChars(0, sb.length(), CHARS, 0);
+	}
+
+	private PercentLabels() {
+	}
+
+	/**
+	 * 返回百分比值对应的文本条目下标，与DecimalFormat("0.0")一样保留一位小数，恰好在两个取值中间时舍入到偶数
+	 * （RoundingMode.HALF_EVEN）。
+	 *
+	 * @param percent
+	 *            百分比值，超出0到100的部分会被截断
+	 * @return 文本条目下标
+	 */
+	public static int indexOf(float percent) {
+		// float乘以10在double中是精确的，rint按四舍六入五成双取整；在float中相乘会把略小于x.x5的值进位成x.x5
+		int index = (int) Math.rint(percent * 10.0);
+		if (index < 0) {
+			return 0;
+		}
+		if (index >= COUNT) {
+			return COUNT - 1;
+		}
+		return index;
+	}
+
+	/**
+	 * 返回存放所有文本的共享数组，调用者不能修改其内容。
+	 */
+	public static char[] getChars() {
+		return CHARS;
+	}
+
+	/**
+	 * 返回下标对应的文本在{@link #getChars()}中的起始位置。
+	 */
+	public static int getStart(int index) {
+		return STARTS[index];
+	}
+
+	/**
+	 * 返回下标对应的文本长度。
+	 */
+	public static int getLength(int index) {
+		return LENGTHS[index];
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在线程之间传递百分比值的单槽缓冲：任意数量的线程可以不加锁地写入，读取方只会看到最后写入的值。
+ * <p>
+ * 值以浮点位的形式保存在一个原子变量中，写入、取出和查看都不会创建对象。
+ */
+public final class PublishedPercent {
+
+	/** 槽为空时的位表示，是一个NaN的位表示，不会与合法的百分比值冲突 */
+	private static final int EMPTY = 0xFFFFFFFF;
+
+	private final AtomicInteger mBits = new AtomicInteger(EMPTY);
+
+	/**
+	 * 写入新值，覆盖尚未取出的旧值。可以在任意线程调用。
+	 * 
+	 * @param value
+	 *            百分比值
+	 * @return 写入前槽是否为空。返回true时调用者需要安排一次{@link #take()}，
+	 *         返回false时已有一次取出在等待，新值会被它一并取走
+	 */
+	public boolean publish(float value) {
+		return mBits.getAndSet(Float.floatToIntBits(value)) == EMPTY;
+	}
+
+	/**
+	 * 取出最后写入的值并清空槽。
+	 * 
+	 * @return 最后写入的值，槽为空时返回NaN
+	 */
+	public float take() {
+		int bits = mBits.getAndSet(EMPTY);
+		return bits == EMPTY ? Float.NaN : Float.intBitsToFloat(bits);
+	}
+
+	/**
+	 * 返回最后写入且尚未取出的值，不清空槽。
+	 * 
+	 * @return 等待取出的值，槽为空时返回NaN
+	 */
+	public float peek() {
+		int bits = mBits.get();
+		return bits == EMPTY ? Float.NaN : Float.intBitsToFloat(bits);
+	}
+}
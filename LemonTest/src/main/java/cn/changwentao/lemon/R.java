@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.lemon;
+
+/**
+ * LemonSample/res/values/graph_attrs.xml中PercentLemon属性的资源ID，取代应用构建时由aapt生成的R，
+ * 使cn.changwentao.widget包可以脱离Android构建工具编译。Robolectric以此类的字段名对应res中的资源，
+ * 因此修改graph_attrs.xml中的属性时必须同时修改这里，数组中的顺序与索引常量一致。
+ */
+public final class R {
+
+	private R() {
+	}
+
+	public static final class attr {
+		public static final int heartColor = 0x7f010000;
+		public static final int heartClickedColor = 0x7f010001;
+		public static final int skinStartColor = 0x7f010002;
+		public static final int skinEndColor = 0x7f010003;
+		public static final int skinDepth = 0x7f010004;
+		public static final int percent = 0x7f010005;
+		public static final int duration = 0x7f010006;
+		public static final int centerTextColor = 0x7f010007;
+		public static final int renderMode = 0x7f010008;
+		public static final int textMode = 0x7f010009;
+		public static final int restoreMode = 0x7f01000a;
+		public static final int skinMode = 0x7f01000b;
+	}
+
+	public static final class styleable {
+		public static final int[] PercentLemon = {
+				0x7f010000, 0x7f010001, 0x7f010002, 0x7f010003,
+				0x7f010004, 0x7f010005, 0x7f010006, 0x7f010007,
+				0x7f010008, 0x7f010009, 0x7f01000a, 0x7f01000b };
+		public static final int PercentLemon_heartColor = 0;
+		public static final int PercentLemon_heartClickedColor = 1;
+		public static final int PercentLemon_skinStartColor = 2;
+		public static final int PercentLemon_skinEndColor = 3;
+		public static final int PercentLemon_skinDepth = 4;
+		public static final int PercentLemon_percent = 5;
+		public static final int PercentLemon_duration = 6;
+		public static final int PercentLemon_centerTextColor = 7;
+		public static final int PercentLemon_renderMode = 8;
+		public static final int PercentLemon_textMode = 9;
+		public static final int PercentLemon_restoreMode = 10;
+		public static final int PercentLemon_skinMode = 11;
+	}
+}
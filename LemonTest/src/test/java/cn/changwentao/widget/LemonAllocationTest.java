@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * 验证animatToPercent动画的每一帧在第一帧之后不分配对象，覆盖LemonTextLayout绘制中心文本、
+ * LemonRenderer.drawTrack绘制灰色轨道以及扫描渐变和字形图集的绘制路径。
+ * <p>
+ * 每种配置先用其他相同配置的PercentLemon播放同样的动画作为预热，直到某次预热在第一帧之后不再分配对象：
+ * Robolectric在第一次执行某个调用点时才完成链接，调用达到一定次数后方法句柄还会在调用线程上生成字节码，
+ * 这些一次性的分配发生在测试代码之外的类库中，不属于PercentLemon，而且出现在哪一帧取决于JIT编译的时机。
+ * 被测实例本身不预热，因此它在第一帧之后的延迟初始化仍会被发现。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LemonAllocationTest {
+
+	/** 预热的最多次数，PercentLemon每帧都分配对象时预热不会结束 */
+	private static final int MAX_WARM_UP_RUNS = 10;
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+	}
+
+	@Test
+	public void shapedTextAndSolidSkin() {
+		assertNoAllocationAfterFirstFrame(PercentLemon.TEXT_MODE_SHAPED,
+				PercentLemon.SKIN_MODE_SOLID);
+	}
+
+	@Test
+	public void sweepGradientSkin() {
+		assertNoAllocationAfterFirstFrame(PercentLemon.TEXT_MODE_SHAPED,
+				PercentLemon.SKIN_MODE_SWEEP_GRADIENT);
+	}
+
+	@Test
+	public void glyphAtlasText() {
+		assertNoAllocationAfterFirstFrame(PercentLemon.TEXT_MODE_GLYPH_ATLAS,
+				PercentLemon.SKIN_MODE_SOLID);
+	}
+
+	private static PercentLemon create(int textMode, int skinMode) {
+		PercentLemon lemon = LemonBenchmarkTest.inflateLeft();
+		lemon.setTextMode(textMode);
+		lemon.setSkinMode(skinMode);
+		return lemon;
+	}
+
+	private static void assertNoAllocationAfterFirstFrame(int textMode,
+			int skinMode) {
+		for (int i = 0; i < MAX_WARM_UP_RUNS; i++) {
+			if (!allocatesAfterFirstFrame(LemonBenchmarkTest.run(
+					create(textMode, skinMode), 100f))) {
+				break;
+			}
+		}
+
+		// 由66.6%到100%，经过的每个标签都会重新排版，灰色轨道随圆弧缩短直至消失
+		LemonBenchmark.Report report = LemonBenchmarkTest.run(
+				create(textMode, skinMode), 100f);
+		int frames = report.getFrameCount();
+		assertTrue(report.isAllocationCounted());
+		assertEquals(100f, report.getPercent(frames - 1), 0f);
+		for (int i = 1; i < frames; i++) {
+			assertEquals("第" + i + "帧分配了对象\n" + report, 0,
+					report.getAllocationBytes(i));
+		}
+	}
+
+	private static boolean allocatesAfterFirstFrame(LemonBenchmark.Report report) {
+		for (int i = 1; i < report.getFrameCount(); i++) {
+			if (report.getAllocationBytes(i) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.util.AttributeSet;
+import android.view.View.MeasureSpec;
+import cn.changwentao.lemon.R;
+
+/**
+ * 以activity_main.xml中两个PercentLemon的属性运行{@link LemonBenchmark}，报告写入lemon.benchmark.dir指定的目录，
+ * 默认为target/lemon-benchmark，可以在不同提交之间比较。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LemonBenchmarkTest {
+
+	/** 测量时的宽度，高度由PercentLemon按宽度决定 */
+	static final int WIDTH = 480;
+
+	/** 构造测试的轮数，包括一轮预热 */
+	static final int CONSTRUCTION_ROUNDS = 6;
+
+	@Before
+	public void setUp() {
+		// 动画帧由LemonBenchmark以确定的时钟推进，主线程的帧回调不能自行执行
+		ShadowLooper.pauseMainLooper();
+	}
+
+	/**
+	 * 与activity_main.xml中左边的PercentLemon相同的属性。
+	 */
+	static PercentLemon inflateLeft() {
+		AttributeSet attrs = Robolectric.buildAttributeSet()
+				.addAttribute(R.attr.percent, "66.6").build();
+		return new PercentLemon(RuntimeEnvironment.application, attrs);
+	}
+
+	/**
+	 * 与activity_main.xml中右边的PercentLemon相同的属性。
+	 */
+	static PercentLemon inflateRight() {
+		AttributeSet attrs = Robolectric.buildAttributeSet()
+				.addAttribute(R.attr.percent, "17.9")
+				.addAttribute(R.attr.skinDepth, "25").build();
+		return new PercentLemon(RuntimeEnvironment.application, attrs);
+	}
+
+	/**
+	 * 播放一次到目标百分比的动画。Robolectric的Canvas不绘制像素而是记录绘制调用，因此不绘制到Bitmap，只统计调用次数。
+	 */
+	static LemonBenchmark.Report run(PercentLemon lemon, float toPercent) {
+		LemonBenchmark benchmark = new LemonBenchmark(lemon);
+		benchmark.setRasterize(false);
+		return benchmark.run(
+				MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+				MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED),
+				toPercent);
+	}
+
+	@Test
+	public void animateLeftLemon() throws IOException {
+		PercentLemon lemon = inflateLeft();
+		assertEquals(66.6f, lemon.getPercent(), 0f);
+		LemonBenchmark.Report report = run(lemon, 100f);
+		writeReport("left", report);
+		assertFrames(report, 100f);
+	}
+
+	@Test
+	public void animateRightLemon() throws IOException {
+		PercentLemon lemon = inflateRight();
+		assertEquals(17.9f, lemon.getPercent(), 0f);
+		LemonBenchmark.Report report = run(lemon, 0f);
+		writeReport("right", report);
+		assertFrames(report, 0f);
+	}
+
+	/**
+	 * 创建10000个PercentLemon。第一轮包含类加载、JIT编译和Robolectric调用点链接的开销，只报告之后最快的一轮。
+	 */
+	@Test
+	public void constructLemons() throws IOException {
+		AttributeSet attrs = Robolectric.buildAttributeSet()
+				.addAttribute(R.attr.percent, "66.6").build();
+		LemonBenchmark.ConstructionReport best = null;
+		for (int i = 0; i < CONSTRUCTION_ROUNDS; i++) {
+			LemonBenchmark.ConstructionReport report = LemonBenchmark
+					.measureConstruction(RuntimeEnvironment.application,
+							attrs, LemonBenchmark.DEFAULT_CONSTRUCTION_COUNT);
+			if (i > 0
+					&& (best == null || report.getTotalNanos() < best
+							.getTotalNanos())) {
+				best = report;
+			}
+		}
+		writeReport("construction", best);
+		assertEquals(LemonBenchmark.DEFAULT_CONSTRUCTION_COUNT,
+				best.getCount());
+	}
+
+	// 默认动画时长为1500毫秒，按16毫秒一帧推进应得到95帧，最后一帧到达目标值
+	private static void assertFrames(LemonBenchmark.Report report,
+			float toPercent) {
+		int frames = report.getFrameCount();
+		assertEquals(95, frames);
+		assertEquals(toPercent, report.getPercent(frames - 1), 0f);
+		assertTrue(report.isAllocationCounted());
+	}
+
+	static void writeReport(String name, Object report) throws IOException {
+		File dir = new File(System.getProperty("lemon.benchmark.dir",
+				"target/lemon-benchmark"));
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("无法创建目录" + dir);
+		}
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(
+				dir, name + ".txt")), "UTF-8");
+		try {
+			writer.write(report.toString());
+		} finally {
+			writer.close();
+		}
+	}
+}
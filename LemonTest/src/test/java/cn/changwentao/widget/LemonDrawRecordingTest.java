@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.MotionEvent;
+import android.view.View.MeasureSpec;
+
+/**
+ * 验证硬件画布上绘制命令的录制和回放：回放的帧比直接绘制发出更少的绘制调用，软件画布上不录制。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LemonDrawRecordingTest {
+
+	/** 直接绘制一帧的调用次数：中心圆、百分比圆弧、灰色轨道、数字和百分号 */
+	private static final int DIRECT_FRAME_CALLS = 5;
+
+	private PercentLemon mLemon;
+	private Bitmap mBitmap;
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+		mLemon = LemonBenchmarkTest.inflateLeft();
+		mLemon.setDrawRecordingEnabled(true);
+		mLemon.setRenderStatsEnabled(true);
+		mLemon.measure(MeasureSpec.makeMeasureSpec(LemonBenchmarkTest.WIDTH,
+				MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(0,
+				MeasureSpec.UNSPECIFIED));
+		mLemon.layout(0, 0, mLemon.getMeasuredWidth(),
+				mLemon.getMeasuredHeight());
+		mBitmap = Bitmap.createBitmap(mLemon.getWidth(), mLemon.getHeight(),
+				Bitmap.Config.ARGB_8888);
+	}
+
+	@Test
+	public void replaysUnchangedFramesOnHardwareCanvas() {
+		CallCountingCanvas canvas = new CallCountingCanvas(mBitmap, true);
+
+		// 第一帧直接绘制，第二帧录制到Picture后绘制Picture，第三帧起两部分都直接回放，每帧两次调用代替五次
+		assertEquals(DIRECT_FRAME_CALLS, drawFrame(canvas));
+		assertEquals(2, drawFrame(canvas));
+		assertEquals(2, drawFrame(canvas));
+		assertEquals(4, canvas.mPictureCount);
+		assertEquals(1, stats().getReplayedDrawCount());
+		assertEquals(2, stats().getReplayedPartCount());
+	}
+
+	@Test
+	public void replaysRingDuringHeartAnimation() {
+		CallCountingCanvas canvas = new CallCountingCanvas(mBitmap, true);
+		float x = mLemon.getWidth() / 2f;
+		float y = mLemon.getHeight() / 2f;
+		assertTrue(mLemon.onTouchEvent(MotionEvent.obtain(0, 0,
+				MotionEvent.ACTION_DOWN, x, y, 0)));
+
+		// 中心圆颜色每帧变化，圆弧和文本部分从第三帧起回放：中心圆一次调用加一次回放
+		int calls = 0;
+		for (int frame = 0; frame < 10; frame++) {
+			mLemon.doAnimationFrame(frame * 16L);
+			calls = drawFrame(canvas);
+		}
+		assertEquals(2, calls);
+		assertEquals(8, stats().getReplayedPartCount());
+		assertEquals(0, stats().getReplayedDrawCount());
+	}
+
+	@Test
+	public void drawsDirectlyOnSoftwareCanvas() {
+		CallCountingCanvas canvas = new CallCountingCanvas(mBitmap, false);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(DIRECT_FRAME_CALLS, drawFrame(canvas));
+		}
+		assertEquals(0, canvas.mPictureCount);
+		assertEquals(0, stats().getReplayedPartCount());
+	}
+
+	@Test
+	public void drawsDirectlyWhenDisabled() {
+		mLemon.setDrawRecordingEnabled(false);
+		CallCountingCanvas canvas = new CallCountingCanvas(mBitmap, true);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(DIRECT_FRAME_CALLS, drawFrame(canvas));
+		}
+		assertEquals(0, canvas.mPictureCount);
+		assertEquals(0, stats().getReplayedPartCount());
+	}
+
+	// Robolectric的View.draw不调用onDraw，与LemonBenchmark一样直接调用，返回这一帧的绘制调用次数
+	private int drawFrame(CallCountingCanvas canvas) {
+		int before = canvas.mCallCount;
+		mLemon.onDraw(canvas);
+		return canvas.mCallCount - before;
+	}
+
+	private LemonRenderStats stats() {
+		return mLemon.getRenderStats();
+	}
+
+	/**
+	 * 统计绘制调用次数的Canvas，可以模拟硬件加速的画布。只计数不绘制：Robolectric的Canvas.save总是返回0，
+	 * 真正回放Picture时restoreToCount会出错。
+	 */
+	private static final class CallCountingCanvas extends Canvas {
+		private final boolean mHardwareAccelerated;
+		int mCallCount;
+		int mPictureCount;
+
+		CallCountingCanvas(Bitmap bitmap, boolean hardwareAccelerated) {
+			super(bitmap);
+			mHardwareAccelerated = hardwareAccelerated;
+		}
+
+		@Override
+		public boolean isHardwareAccelerated() {
+			return mHardwareAccelerated;
+		}
+
+		@Override
+		public void drawCircle(float cx, float cy, float radius, Paint paint) {
+			mCallCount++;
+		}
+
+		@Override
+		public void drawArc(RectF oval, float startAngle, float sweepAngle,
+				boolean useCenter, Paint paint) {
+			mCallCount++;
+		}
+
+		@Override
+		public void drawText(char[] text, int index, int count, float x,
+				float y, Paint paint) {
+			mCallCount++;
+		}
+
+		@Override
+		public void drawText(String text, float x, float y, Paint paint) {
+			mCallCount++;
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, float left, float top,
+				Paint paint) {
+			mCallCount++;
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+			mCallCount++;
+		}
+
+		@Override
+		public void drawPicture(Picture picture) {
+			mCallCount++;
+			mPictureCount++;
+		}
+	}
+}
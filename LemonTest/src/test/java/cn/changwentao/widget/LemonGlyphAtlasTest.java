@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.View.MeasureSpec;
+
+/**
+ * 验证被淘汰的字形图集不再被使用：持有它的圆环改为直接绘制文本，内存上限因此也限制了使用中的图集。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LemonGlyphAtlasTest {
+
+	private PercentLemon mLemon;
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+		LemonGlyphAtlas.evictAll();
+		mLemon = LemonBenchmarkTest.inflateLeft();
+		mLemon.setTextMode(PercentLemon.TEXT_MODE_GLYPH_ATLAS);
+		mLemon.measure(MeasureSpec.makeMeasureSpec(LemonBenchmarkTest.WIDTH,
+				MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(0,
+				MeasureSpec.UNSPECIFIED));
+		mLemon.layout(0, 0, mLemon.getMeasuredWidth(),
+				mLemon.getMeasuredHeight());
+	}
+
+	@After
+	public void tearDown() {
+		LemonGlyphAtlas.setMaxBytes(LemonGlyphAtlas.DEFAULT_MAX_BYTES);
+	}
+
+	@Test
+	public void drawsShapedTextAfterEviction() {
+		TextCountingCanvas canvas = draw();
+		assertEquals(0, canvas.mTextCount);
+		assertEquals(5, canvas.mGlyphCount);
+
+		LemonGlyphAtlas.evictAll();
+		canvas = draw();
+		assertEquals(2, canvas.mTextCount);
+		assertEquals(0, canvas.mGlyphCount);
+	}
+
+	@Test
+	public void capAppliesToAtlasesInUse() {
+		LemonGlyphAtlas.setMaxBytes(0);
+		TextCountingCanvas canvas = draw();
+		assertEquals(2, canvas.mTextCount);
+		assertEquals(0, canvas.mGlyphCount);
+	}
+
+	@Test
+	public void reobtainsAtlasWhenRadiusChanges() {
+		mLemon.setSkinDepth(10);
+		draw();
+		LemonGlyphAtlas.evictAll();
+		draw();
+		mLemon.setSkinDepth(20);
+		TextCountingCanvas canvas = draw();
+		assertEquals(0, canvas.mTextCount);
+		assertEquals(5, canvas.mGlyphCount);
+	}
+
+	// Robolectric的View.draw不调用onDraw，直接调用
+	private TextCountingCanvas draw() {
+		TextCountingCanvas canvas = new TextCountingCanvas(
+				Bitmap.createBitmap(mLemon.getWidth(), mLemon.getHeight(),
+						Bitmap.Config.ARGB_8888));
+		mLemon.onDraw(canvas);
+		return canvas;
+	}
+
+	/**
+	 * 分别统计直接绘制的文本和从图集复制的字形数量的Canvas。
+	 */
+	private static final class TextCountingCanvas extends Canvas {
+		int mTextCount;
+		int mGlyphCount;
+
+		TextCountingCanvas(Bitmap bitmap) {
+			super(bitmap);
+		}
+
+		@Override
+		public void drawText(char[] text, int index, int count, float x,
+				float y, Paint paint) {
+			mTextCount++;
+		}
+
+		@Override
+		public void drawText(String text, float x, float y, Paint paint) {
+			mTextCount++;
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+			mGlyphCount++;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.View.MeasureSpec;
+
+/**
+ * 验证静态图层缓存只代替中心圆的绘制：百分比圆弧和剩余的灰色轨道与不使用缓存时完全相同。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LemonLayerCacheTest {
+
+	private PercentLemon mLemon;
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+		mLemon = LemonBenchmarkTest.inflateLeft();
+		mLemon.measure(MeasureSpec.makeMeasureSpec(LemonBenchmarkTest.WIDTH,
+				MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(0,
+				MeasureSpec.UNSPECIFIED));
+		mLemon.layout(0, 0, mLemon.getMeasuredWidth(),
+				mLemon.getMeasuredHeight());
+	}
+
+	@Test
+	public void cachesOnlyHeart() {
+		OpRecordingCanvas direct = draw();
+		mLemon.setLayerCacheEnabled(true);
+		OpRecordingCanvas cached = draw();
+
+		assertEquals("[circle]", direct.mHearts.toString());
+		assertEquals("[bitmap]", cached.mHearts.toString());
+		assertEquals(2, direct.mArcs.size());
+		assertEquals(direct.mArcs, cached.mArcs);
+	}
+
+	@Test
+	public void cachesOnlyHeartForSegments() {
+		mLemon.setSegments(new float[] { 30f, 20f }, new int[] { 0xFF00FF00,
+				0xFFFF0000 });
+		OpRecordingCanvas direct = draw();
+		mLemon.setLayerCacheEnabled(true);
+		OpRecordingCanvas cached = draw();
+
+		assertEquals("[bitmap]", cached.mHearts.toString());
+		assertEquals(3, direct.mArcs.size());
+		assertEquals(direct.mArcs, cached.mArcs);
+	}
+
+	// Robolectric的View.draw不调用onDraw，直接调用
+	private OpRecordingCanvas draw() {
+		OpRecordingCanvas canvas = new OpRecordingCanvas(Bitmap.createBitmap(
+				mLemon.getWidth(), mLemon.getHeight(), Bitmap.Config.ARGB_8888));
+		mLemon.onDraw(canvas);
+		return canvas;
+	}
+
+	/**
+	 * 记录中心圆和圆弧绘制调用的Canvas，圆弧记录起始角度、扫过角度和颜色。
+	 */
+	private static final class OpRecordingCanvas extends Canvas {
+		final List<String> mHearts = new ArrayList<String>();
+		final List<String> mArcs = new ArrayList<String>();
+
+		OpRecordingCanvas(Bitmap bitmap) {
+			super(bitmap);
+		}
+
+		@Override
+		public void drawCircle(float cx, float cy, float radius, Paint paint) {
+			mHearts.add("circle");
+		}
+
+		@Override
+		public void drawBitmap(Bitmap bitmap, float left, float top,
+				Paint paint) {
+			mHearts.add("bitmap");
+		}
+
+		@Override
+		public void drawArc(RectF oval, float startAngle, float sweepAngle,
+				boolean useCenter, Paint paint) {
+			mArcs.add(startAngle + "+" + sweepAngle + "#"
+					+ Integer.toHexString(paint.getColor()));
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.view.View.MeasureSpec;
+
+/**
+ * 验证onMeasure保存的上一次测量结果：相同测量规格和内边距时直接使用，外围圆环宽度或内边距改变后重新测量。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LemonMeasureTest {
+
+	private static final int WIDTH_SPEC = MeasureSpec.makeMeasureSpec(
+			LemonBenchmarkTest.WIDTH, MeasureSpec.EXACTLY);
+	private static final int HEIGHT_SPEC = MeasureSpec.makeMeasureSpec(0,
+			MeasureSpec.UNSPECIFIED);
+
+	private PercentLemon mLemon;
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+		mLemon = LemonBenchmarkTest.inflateLeft();
+		mLemon.setRenderStatsEnabled(true);
+	}
+
+	// View.measure在测量规格不变时不调用onMeasure，因此直接调用onMeasure
+	private long measure(int widthSpec) {
+		mLemon.onMeasure(widthSpec, HEIGHT_SPEC);
+		return mLemon.getRenderStats().getMeasureMemoHitCount();
+	}
+
+	@Test
+	public void reusesResultForSameSpecs() {
+		assertEquals(0, measure(WIDTH_SPEC));
+		int width = mLemon.getMeasuredWidth();
+		int height = mLemon.getMeasuredHeight();
+		assertEquals(1, measure(WIDTH_SPEC));
+		assertEquals(width, mLemon.getMeasuredWidth());
+		assertEquals(height, mLemon.getMeasuredHeight());
+
+		assertEquals(1, measure(MeasureSpec.makeMeasureSpec(
+				LemonBenchmarkTest.WIDTH / 2, MeasureSpec.EXACTLY)));
+		assertEquals(LemonBenchmarkTest.WIDTH / 2, mLemon.getMeasuredWidth());
+		assertEquals(3, mLemon.getRenderStats().getMeasureCount());
+	}
+
+	@Test
+	public void skinDepthClearsResult() {
+		mLemon.setSkinDepth(10);
+		measure(WIDTH_SPEC);
+		mLemon.setSkinDepth(20);
+		assertEquals(0, measure(WIDTH_SPEC));
+		assertEquals(1, measure(WIDTH_SPEC));
+	}
+
+	@Test
+	public void paddingRemeasures() {
+		measure(WIDTH_SPEC);
+		int height = mLemon.getMeasuredHeight();
+		mLemon.setPadding(0, 40, 0, 40);
+		assertEquals(0, measure(WIDTH_SPEC));
+		assertEquals(height + 80, mLemon.getMeasuredHeight());
+		assertEquals(1, measure(WIDTH_SPEC));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.view.View;
+
+/**
+ * 验证渲染模式选择的layer类型和切换次数。测试运行在Android 8.1上，硬件加速不绘制图形的阴影。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LemonRenderModeTest {
+
+	private PercentLemon mLemon;
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+		mLemon = LemonBenchmarkTest.inflateLeft();
+	}
+
+	// Robolectric的View.setLayerType不记录layer类型，因此读取LemonLayerController确定的类型
+	private int layerType() {
+		return mLemon.getLayerController().getLayerType();
+	}
+
+	@Test
+	public void autoIsDefaultAndDrawsWithoutLayer() {
+		assertEquals(PercentLemon.RENDER_MODE_AUTO, mLemon.getRenderMode());
+		assertEquals(View.LAYER_TYPE_NONE, layerType());
+		assertEquals(0, mLemon.getLayerTransitionCount());
+	}
+
+	@Test
+	public void autoFollowsShadowLayer() {
+		mLemon.setShadowLayer(4, 0, 2, 0x80000000);
+		assertEquals(View.LAYER_TYPE_SOFTWARE, layerType());
+		assertEquals(1, mLemon.getLayerTransitionCount());
+
+		// 动画和与阴影无关的设置不切换layer
+		mLemon.animatToPercent(10f);
+		mLemon.setSkinMode(PercentLemon.SKIN_MODE_SWEEP_GRADIENT);
+		mLemon.setShadowLayer(6, 0, 3, 0x80000000);
+		assertEquals(View.LAYER_TYPE_SOFTWARE, layerType());
+		assertEquals(1, mLemon.getLayerTransitionCount());
+
+		mLemon.clearShadowLayer();
+		assertEquals(View.LAYER_TYPE_NONE, layerType());
+		assertEquals(2, mLemon.getLayerTransitionCount());
+	}
+
+	@Test
+	public void manualModesIgnoreShadowLayer() {
+		mLemon.setRenderMode(PercentLemon.RENDER_MODE_HARDWARE);
+		mLemon.setShadowLayer(4, 0, 2, 0x80000000);
+		assertEquals(View.LAYER_TYPE_NONE, layerType());
+
+		mLemon.setRenderMode(PercentLemon.RENDER_MODE_HARDWARE_LAYER);
+		assertEquals(View.LAYER_TYPE_HARDWARE, layerType());
+		mLemon.clearShadowLayer();
+		assertEquals(View.LAYER_TYPE_HARDWARE, layerType());
+		assertEquals(1, mLemon.getLayerTransitionCount());
+	}
+}
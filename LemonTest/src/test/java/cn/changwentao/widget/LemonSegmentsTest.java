@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2014 Chang Wentao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cn.changwentao.widget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.View.MeasureSpec;
+
+/**
+ * 验证分段显示的各段之和因舍入误差略大于100时，圆弧角度之和被截断到360度，灰色轨道的角度不为负。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LemonSegmentsTest {
+
+	private static final int[] COLORS = { 0xFF00FF00, 0xFFFF0000 };
+
+	private PercentLemon mLemon;
+
+	@Before
+	public void setUp() {
+		ShadowLooper.pauseMainLooper();
+		mLemon = LemonBenchmarkTest.inflateLeft();
+		mLemon.measure(MeasureSpec.makeMeasureSpec(LemonBenchmarkTest.WIDTH,
+				MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(0,
+				MeasureSpec.UNSPECIFIED));
+		mLemon.layout(0, 0, mLemon.getMeasuredWidth(),
+				mLemon.getMeasuredHeight());
+	}
+
+	@Test
+	public void truncatesSumSlightlyAbove100() {
+		mLemon.setSegments(new float[] { 60f, 40.00001f }, COLORS);
+		assertEquals(100f, mLemon.getPercent(), 0f);
+
+		ArcRecordingCanvas canvas = draw();
+		assertEquals(2, canvas.mArcCount);
+		assertEquals(360f, canvas.mSweepSum, 1e-3f);
+		assertTrue(canvas.mMinSweep >= 0);
+	}
+
+	@Test
+	public void truncatesSingleSegmentSlightlyAbove100() {
+		mLemon.setSegments(new float[] { 100.00001f }, new int[] { COLORS[0] });
+		assertEquals(100f, mLemon.getPercent(), 0f);
+
+		ArcRecordingCanvas canvas = draw();
+		assertEquals(360f, canvas.mSweepSum, 1e-3f);
+		assertTrue(canvas.mMinSweep >= 0);
+	}
+
+	@Test
+	public void drawsRemainingTrack() {
+		mLemon.setSegments(new float[] { 25f, 25f }, COLORS);
+
+		ArcRecordingCanvas canvas = draw();
+		assertEquals(3, canvas.mArcCount);
+		assertEquals(360f, canvas.mSweepSum, 1e-3f);
+		assertTrue(canvas.mMinSweep >= 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSumAboveTolerance() {
+		mLemon.setSegments(new float[] { 60f, 40.01f }, COLORS);
+	}
+
+	// Robolectric的View.draw不调用onDraw，直接调用
+	private ArcRecordingCanvas draw() {
+		ArcRecordingCanvas canvas = new ArcRecordingCanvas(
+				Bitmap.createBitmap(mLemon.getWidth(), mLemon.getHeight(),
+						Bitmap.Config.ARGB_8888));
+		mLemon.onDraw(canvas);
+		return canvas;
+	}
+
+	/**
+	 * 记录圆弧角度的Canvas。
+	 */
+	private static final class ArcRecordingCanvas extends Canvas {
+		int mArcCount;
+		float mSweepSum;
+		float mMinSweep = Float.MAX_VALUE;
+
+		ArcRecordingCanvas(Bitmap bitmap) {
+			super(bitmap);
+		}
+
+		@Override
+		public void drawArc(RectF oval, float startAngle, float sweepAngle,
+				boolean useCenter, Paint paint) {
+			mArcCount++;
+			mSweepSum += sweepAngle;
+			mMinSweep = Math.min(mMinSweep, sweepAngle);
+		}
+	}
+}